@@ -0,0 +1,25 @@
+package org.example.pingpongsystem.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * 后台任务线程池：统计计数等不影响请求响应的工作，队列满时拒绝提交（调用方自行处理）
+ */
+@Configuration
+public class AsyncConfig {
+
+    @Bean(name = "backgroundTaskExecutor")
+    public ThreadPoolTaskExecutor backgroundTaskExecutor(@Value("${background.pool-size:2}") int poolSize,
+                                                         @Value("${background.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("background-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
+}
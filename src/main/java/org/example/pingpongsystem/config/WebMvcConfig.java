@@ -1,19 +1,29 @@
 package org.example.pingpongsystem.config;
 
 import org.example.pingpongsystem.interceptor.ActivationInterceptor;
+import org.example.pingpongsystem.interceptor.AuthPrincipalInterceptor;
+import org.example.pingpongsystem.resolver.AuthPrincipalArgumentResolver;
 import org.example.pingpongsystem.utility.Utility;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.List;
+
 @Configuration
 public class WebMvcConfig implements WebMvcConfigurer {
     private final ActivationInterceptor activationInterceptor;
+    private final AuthPrincipalInterceptor authPrincipalInterceptor;
+    private final AuthPrincipalArgumentResolver authPrincipalArgumentResolver;
 
-    public WebMvcConfig(ActivationInterceptor activationInterceptor) {
+    public WebMvcConfig(ActivationInterceptor activationInterceptor, AuthPrincipalInterceptor authPrincipalInterceptor,
+                        AuthPrincipalArgumentResolver authPrincipalArgumentResolver) {
         this.activationInterceptor = activationInterceptor;
+        this.authPrincipalInterceptor = authPrincipalInterceptor;
+        this.authPrincipalArgumentResolver = authPrincipalArgumentResolver;
     }
 
     @Override
@@ -34,6 +44,15 @@ public class WebMvcConfig implements WebMvcConfigurer {
                         "/user-avatars/**"
 
                 );
+        // 激活校验之后解析登录身份（只对声明了AuthPrincipal参数的接口生效）
+        registry.addInterceptor(authPrincipalInterceptor)
+                .addPathPatterns("/**");
+    }
+
+    // 注册AuthPrincipal参数解析器
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(authPrincipalArgumentResolver);
     }
 
     // 配置静态资源映射：将本地图片目录映射为URL路径
@@ -1,6 +1,8 @@
 package org.example.pingpongsystem.controller;
 
 import lombok.Data;
+import org.example.pingpongsystem.dto.AuthPrincipal;
+import org.example.pingpongsystem.dto.PaymentRecordSliceDTO;
 import org.example.pingpongsystem.entity.*;
 import org.example.pingpongsystem.service.AdminService;
 import org.example.pingpongsystem.service.CoachService;
@@ -30,9 +32,9 @@ public class AdminController {
     }
 
     @GetMapping("/get_coach_register")
-    public Result<List<CoachEntity>> getCoachRegister(@RequestParam(name = "token") String token) {
-        // 通过token获取当前登录管理员的ID，再查询其管理的所有校区的待审核教练
-        return adminService.getUncertifiedCoachesByAdminToken(token);
+    public Result<List<CoachEntity>> getCoachRegister(AuthPrincipal principal) {
+        // 按当前登录管理员（拦截器已解析）查询其管理的所有校区的待审核教练
+        return adminService.getUncertifiedCoaches(principal);
     }
 
     @GetMapping("/get_coach_detail")
@@ -70,54 +72,83 @@ public class AdminController {
 
     @GetMapping("/get_coaches_by_school")
     public Result<List<CoachEntity>> getCoachesBySchoolId(
-            @RequestParam String token,
+            AuthPrincipal principal,
             @RequestParam Long schoolId) {
-        return adminService.getCoachesBySchoolId(token, schoolId);
+        return adminService.getCoachesBySchoolId(principal, schoolId);
     }
 
     @GetMapping("/get_students_by_school")
     public Result<List<StudentEntity>> getStudentsBySchoolId(
-            @RequestParam String token,
+            AuthPrincipal principal,
             @RequestParam Long schoolId) {
-        return adminService.getStudentsBySchoolId(token, schoolId);
+        return adminService.getStudentsBySchoolId(principal, schoolId);
     }
 
     // 查看所辖校区学生列表（分页）
     @GetMapping("/students")
     public Result<Page<StudentEntity>> getManagedStudents(
-            @RequestParam String token,
+            AuthPrincipal principal,
             @RequestParam(required = false) Long schoolId,
             @RequestParam(required = false) String name,
             @RequestParam(defaultValue = "1") Integer pageNum,  // 页码，默认第1页
             @RequestParam(defaultValue = "10") Integer pageSize) {  // 每页条数，默认10条
-        return adminService.getStudentsBySchoolIdWithPage(token, schoolId, name, pageNum, pageSize);
+        return adminService.getStudentsBySchoolIdWithPage(principal, schoolId, name, pageNum, pageSize);
     }
 
     // 查看所辖校区已认证教练列表（分页）
     @GetMapping("/certified-coaches")
     public Result<Page<CoachEntity>> getManagedCertifiedCoaches(
-            @RequestParam String token,
+            AuthPrincipal principal,
             @RequestParam(required = false) Long schoolId,
             @RequestParam(required = false) String name,
             @RequestParam(required = false) Integer level,
             @RequestParam(defaultValue = "1") Integer pageNum,
             @RequestParam(defaultValue = "10") Integer pageSize) {
-        return adminService.getCertifiedCoachesBySchoolIdWithPage(token, schoolId, name, level, pageNum, pageSize);
+        return adminService.getCertifiedCoachesBySchoolIdWithPage(principal, schoolId, name, level, pageNum, pageSize);
     }
 
     // 原有修改接口保持不变...
     @PostMapping("/update-student")
     public Result<StudentEntity> updateStudent(
-            @RequestParam String token,
+            AuthPrincipal principal,
             @RequestBody StudentEntity student) {
-        return adminService.updateStudent(token, student);
+        return adminService.updateStudent(principal, student);
     }
 
     @PostMapping("/update-certified-coach")
     public Result<CoachEntity> updateCertifiedCoach(
-            @RequestParam String token,
+            AuthPrincipal principal,
             @RequestBody CoachEntity coach) {
-        return adminService.updateCertifiedCoach(token, coach);
+        return adminService.updateCertifiedCoach(principal, coach);
+    }
+
+    /**
+     * 向所辖校区的全体学员和教练发布公告，返回收到公告的人数
+     */
+    @PostMapping("/announce")
+    public Result<Integer> announce(
+            AuthPrincipal principal,
+            @RequestBody AnnounceRequest request) {
+        return adminService.announceToSchool(principal, request.schoolId, request.content);
+    }
+
+    @Data
+    public static class AnnounceRequest {
+        private Long schoolId;
+        private String content;
+    }
+
+    // 所辖校区学员的交易记录（游标分页，可按状态/支付方式/学员筛选）
+    @GetMapping("/payment_records")
+    public Result<PaymentRecordSliceDTO> getSchoolPaymentRecords(
+            AuthPrincipal principal,
+            @RequestParam Long schoolId,
+            @RequestParam(required = false) Long studentId,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String method,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return adminService.getSchoolPaymentRecords(principal, schoolId, studentId, status, method, cursor, size);
     }
 
     /**
@@ -1,13 +1,12 @@
 package org.example.pingpongsystem.controller;
 
+import org.example.pingpongsystem.dto.AuthPrincipal;
 import org.example.pingpongsystem.dto.SchoolDTO;
 import org.example.pingpongsystem.entity.ScheduleEntity;
 import org.example.pingpongsystem.entity.SchoolEntity;
 import org.example.pingpongsystem.service.AdminService;
 import org.example.pingpongsystem.service.ScheduleService;
-import org.example.pingpongsystem.service.TokenService;
 import org.example.pingpongsystem.utility.Result;
-import org.example.pingpongsystem.utility.interfaces.InfoAns;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -16,11 +15,9 @@ import java.util.List;
 @RestController
 public class AdminScheduleController {
     private final ScheduleService scheduleService;
-    private final TokenService tokenService;
 
-    public AdminScheduleController(ScheduleService scheduleService, TokenService tokenService) {
+    public AdminScheduleController(ScheduleService scheduleService) {
         this.scheduleService = scheduleService;
-        this.tokenService = tokenService;
     }
 
     // 获取默认课表模板
@@ -31,12 +28,8 @@ public class AdminScheduleController {
 
     // 获取管辖校区
     @GetMapping("/managed-schools")
-    public Result<List<SchoolEntity>> getManagedSchools(@RequestParam String token) {
-        Result<InfoAns> infoResult = tokenService.getInfo(token);
-        if (!infoResult.isSuccess()) {
-            return Result.error(infoResult.getCode(), infoResult.getMessage());
-        }
-        return scheduleService.getManagedSchools(Long.valueOf(infoResult.getData().getUserId()));
+    public Result<List<SchoolEntity>> getManagedSchools(AuthPrincipal principal) {
+        return scheduleService.getManagedSchools(principal.getUserId());
     }
 
     // 检查校区是否已有课表
@@ -62,13 +55,8 @@ public class AdminScheduleController {
 
     // 获取自己管辖的、已有课表的校区列表（作为现有模板选择项）
     @GetMapping("/existing-templates")
-    public Result<List<SchoolDTO>> getManagedExistingTemplateSchools(@RequestParam String token) {
-        Result<InfoAns> infoResult = tokenService.getInfo(token);
-        if (!infoResult.isSuccess()) {
-            return Result.error(infoResult.getCode(), infoResult.getMessage());
-        }
-        Long adminId = Long.valueOf(infoResult.getData().getUserId());
-        return scheduleService.getManagedSchoolsWithSchedule(adminId);
+    public Result<List<SchoolDTO>> getManagedExistingTemplateSchools(AuthPrincipal principal) {
+        return scheduleService.getManagedSchoolsWithSchedule(principal.getUserId());
     }
 
     // 根据校区ID获取该校区的课表（作为模板使用）
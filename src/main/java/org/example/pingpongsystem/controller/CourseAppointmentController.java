@@ -1,13 +1,20 @@
 package org.example.pingpongsystem.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.example.pingpongsystem.dto.AppointmentPageDTO;
+import org.example.pingpongsystem.dto.FreeSlotDTO;
+import org.example.pingpongsystem.dto.SeriesOccurrenceDTO;
 import org.example.pingpongsystem.entity.CancelRecordEntity;
 import org.example.pingpongsystem.entity.CourseAppointmentEntity;
 import org.example.pingpongsystem.service.CourseAppointmentService;
+import org.example.pingpongsystem.service.FreeSlotService;
+import org.example.pingpongsystem.service.SeriesBookingService;
 import org.example.pingpongsystem.utility.Result;
+import org.example.pingpongsystem.utility.StatusCode;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -17,6 +24,8 @@ import java.util.List;
 public class CourseAppointmentController {
 
     private final CourseAppointmentService appointmentService;
+    private final FreeSlotService freeSlotService;
+    private final SeriesBookingService seriesBookingService;
 
     // 获取教练课表
     @GetMapping("/coach_schedule")
@@ -24,6 +33,15 @@ public class CourseAppointmentController {
         return appointmentService.getCoachSchedule(coachId);
     }
 
+    // 查询教练可预约的空闲时段（默认从startDate起一周）
+    @GetMapping("/free_slots")
+    public Result<List<FreeSlotDTO>> getFreeSlots(
+            @RequestParam Long coachId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        return freeSlotService.findFreeSlots(coachId, startDate, endDate != null ? endDate : startDate.plusDays(6));
+    }
+
     // 学员预约课程
     @PostMapping("/book")
     public Result<CourseAppointmentEntity> bookCourse(
@@ -36,6 +54,22 @@ public class CourseAppointmentController {
         return appointmentService.bookCourse(coachId, studentId, startTime, endTime, tableId, autoAssign);
     }
 
+    // 学员连续多周预约（每周同一时段，全部成功或全部不预约）
+    @PostMapping("/book_series")
+    public Result<List<SeriesOccurrenceDTO>> bookSeries(
+            @RequestParam Long coachId,
+            @RequestParam Long studentId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
+            @RequestParam int weeks,
+            @RequestParam(required = false) Long tableId,
+            @RequestParam boolean autoAssign) {
+        if (!autoAssign && tableId == null) {
+            return Result.error(StatusCode.FAIL, "请选择球台");
+        }
+        return seriesBookingService.bookSeries(coachId, studentId, startTime, endTime, weeks, autoAssign ? null : tableId);
+    }
+
     // 教练处理预约
     @PostMapping("/coach_handle")
     public Result<String> handleCoachConfirmation(
@@ -61,14 +95,28 @@ public class CourseAppointmentController {
         return appointmentService.handleCancelRequest(cancelRecordId, approve);
     }
 
+    // 学员预约列表：按开始时间分页，默认只看今天及以后；翻页时传回上一页的nextCursor
     @GetMapping("/student_list")
-    public Result<List<CourseAppointmentEntity>> getStudentAppointments(@RequestParam Long studentId) {
-        return appointmentService.getStudentAppointments(studentId);
+    public Result<AppointmentPageDTO> getStudentAppointments(
+            @RequestParam Long studentId,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return appointmentService.getStudentAppointments(studentId, status, from, to, cursor, size);
     }
 
+    // 教练预约列表，参数同学员预约列表
     @GetMapping("/coach_list")
-    public Result<List<CourseAppointmentEntity>> getCoachAppointments(@RequestParam Long coachId){
-        return appointmentService.getCoachAppointments(coachId);
+    public Result<AppointmentPageDTO> getCoachAppointments(
+            @RequestParam Long coachId,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return appointmentService.getCoachAppointments(coachId, status, from, to, cursor, size);
     }
 
     @GetMapping("/pending_cancel_records")
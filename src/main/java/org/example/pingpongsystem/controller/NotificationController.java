@@ -1,9 +1,12 @@
 package org.example.pingpongsystem.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.example.pingpongsystem.dto.AuthPrincipal;
 import org.example.pingpongsystem.entity.NotificationEntity;
+import org.example.pingpongsystem.service.NotificationPushService;
 import org.example.pingpongsystem.service.NotificationService;
 import org.example.pingpongsystem.utility.Result;
+import org.example.pingpongsystem.utility.StatusCode;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -12,11 +15,14 @@ import java.util.List;
 @RestController
 @RequiredArgsConstructor
 public class NotificationController {
+    private static final int MAX_MARK_READ_IDS = 1000;
+    private static final int MAX_HISTORY_SIZE = 100;
 
     private final NotificationService notificationService;
+    private final NotificationPushService notificationPushService;
 
     /**
-     * 查询用户的未读通知（供前端轮询或实时查询）
+     * 查询用户的未读通知（不支持SSE的客户端轮询使用）
      */
     @GetMapping("/unread")
     public Result<List<NotificationEntity>> getUnreadNotifications(
@@ -27,6 +33,67 @@ public class NotificationController {
         return Result.success(unread);
     }
 
+    /**
+     * 当前登录用户的历史通知（含已归档的已读通知），按时间倒序翻页：beforeId传上一页最后一条通知的ID，首页不传
+     */
+    @GetMapping("/history")
+    public Result<List<NotificationEntity>> getHistory(
+            AuthPrincipal principal,
+            @RequestParam(required = false) Long beforeId,
+            @RequestParam(defaultValue = "20") Integer size) {
+
+        NotificationEntity.UserType userType = userTypeOf(principal);
+        if (userType == null) {
+            return Result.error(StatusCode.FAIL, "当前身份没有通知");
+        }
+        if (size < 1 || size > MAX_HISTORY_SIZE) {
+            return Result.error(StatusCode.FAIL, "每页条数需在1到" + MAX_HISTORY_SIZE + "之间");
+        }
+        return Result.success(notificationService.getHistory(principal.getUserId(), userType, beforeId, size));
+    }
+
+    /**
+     * 当前登录用户的未读通知数（未读角标使用）
+     */
+    @GetMapping("/unread/count")
+    public Result<Long> getUnreadCount(AuthPrincipal principal) {
+        NotificationEntity.UserType userType = userTypeOf(principal);
+        if (userType == null) {
+            return Result.error(StatusCode.FAIL, "当前身份没有通知");
+        }
+        return Result.success(notificationService.getUnreadCount(principal.getUserId(), userType));
+    }
+
+    /**
+     * 通知推送（SSE）：连接后先推送未读通知，之后有新通知时推送（事件名notification，事件ID为已推送的最大通知ID）
+     * 只推送当前登录用户的通知（按token解析身份，EventSource无法设置请求头，token放在请求参数中）
+     * 断线重连时浏览器自动带上Last-Event-ID请求头，也可用lastEventId参数指定，从该ID之后补发
+     * 身份无法接收通知时返回JSON格式的错误（EventSource收到非事件流响应后不再重连）
+     */
+    @GetMapping("/stream")
+    public Object stream(
+            AuthPrincipal principal,
+            @RequestParam(required = false) Long lastEventId,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventIdHeader) {
+
+        NotificationEntity.UserType userType = userTypeOf(principal);
+        if (userType == null) {
+            return Result.error(StatusCode.FAIL, "当前身份没有通知");
+        }
+        return notificationPushService.subscribe(principal.getUserId(), userType,
+                lastEventIdHeader != null ? lastEventIdHeader : lastEventId);
+    }
+
+    // 登录角色对应的通知用户类型，超级管理员没有通知
+    private static NotificationEntity.UserType userTypeOf(AuthPrincipal principal) {
+        return switch (principal.getRole()) {
+            case "student" -> NotificationEntity.UserType.STUDENT;
+            case "coach" -> NotificationEntity.UserType.COACH;
+            case "admin" -> NotificationEntity.UserType.ADMIN;
+            default -> null;
+        };
+    }
+
     /**
      * 标记通知为已读（用户查看后调用）
      */
@@ -35,4 +102,23 @@ public class NotificationController {
         notificationService.markNotificationAsRead(notificationId);
         return Result.success();
     }
+
+    /**
+     * 批量标记当前登录用户的通知为已读：传notificationIds时标记这些通知（不属于该用户的忽略），不传时标记全部未读通知
+     * 返回实际标记的条数
+     */
+    @PostMapping("/mark-read-batch")
+    public Result<Integer> markReadBatch(
+            AuthPrincipal principal,
+            @RequestParam(required = false) List<Long> notificationIds) {
+
+        NotificationEntity.UserType userType = userTypeOf(principal);
+        if (userType == null) {
+            return Result.error(StatusCode.FAIL, "当前身份没有通知");
+        }
+        if (notificationIds != null && notificationIds.size() > MAX_MARK_READ_IDS) {
+            return Result.error(StatusCode.FAIL, "一次最多标记" + MAX_MARK_READ_IDS + "条通知");
+        }
+        return Result.success(notificationService.markRead(principal.getUserId(), userType, notificationIds));
+    }
 }
\ No newline at end of file
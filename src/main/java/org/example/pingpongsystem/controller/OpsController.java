@@ -0,0 +1,106 @@
+package org.example.pingpongsystem.controller;
+
+import org.example.pingpongsystem.dto.AuthPrincipal;
+import org.example.pingpongsystem.service.JobMonitor;
+import org.example.pingpongsystem.service.LedgerService;
+import org.example.pingpongsystem.service.NotificationWriter;
+import org.example.pingpongsystem.service.OutboxService;
+import org.example.pingpongsystem.service.TokenCleanupService;
+import org.example.pingpongsystem.service.TokenService;
+import org.example.pingpongsystem.utility.Result;
+import org.example.pingpongsystem.utility.StatusCode;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+
+/**
+ * 运维统计接口（缓存命中率等），用于容量评估
+ * 所有接口都需要超级管理员权限
+ */
+@RequestMapping("/ops")
+@RestController
+public class OpsController {
+    private final TokenService tokenService;
+    private final TokenCleanupService tokenCleanupService;
+    private final LedgerService ledgerService;
+    private final OutboxService outboxService;
+    private final JobMonitor jobMonitor;
+    private final NotificationWriter notificationWriter;
+
+    public OpsController(TokenService tokenService, TokenCleanupService tokenCleanupService,
+                         LedgerService ledgerService, OutboxService outboxService, JobMonitor jobMonitor,
+                         NotificationWriter notificationWriter) {
+        this.tokenService = tokenService;
+        this.tokenCleanupService = tokenCleanupService;
+        this.ledgerService = ledgerService;
+        this.outboxService = outboxService;
+        this.jobMonitor = jobMonitor;
+        this.notificationWriter = notificationWriter;
+    }
+
+    // token会话缓存：size/maxSize/hits/misses/evictions
+    @GetMapping("/token_cache")
+    public Result<Map<String, Long>> getTokenCacheStats(AuthPrincipal principal) {
+        if (!principal.isSuperAdmin()) {
+            return Result.error(StatusCode.FAIL, "权限不足，非超级管理员");
+        }
+        return Result.success(tokenService.getSessionCacheStats());
+    }
+
+    // 过期token清理：lastRemoved/totalRemoved/lastRunMillis
+    @GetMapping("/token_purge")
+    public Result<Map<String, Long>> getTokenPurgeStats(AuthPrincipal principal) {
+        if (!principal.isSuperAdmin()) {
+            return Result.error(StatusCode.FAIL, "权限不足，非超级管理员");
+        }
+        return Result.success(tokenCleanupService.stats());
+    }
+
+    // 账本月度对账（month格式：2025-09，默认上个月）：各类账户净变动、借贷是否平衡
+    @GetMapping("/ledger_reconcile")
+    public Result<Map<String, Object>> reconcileLedger(AuthPrincipal principal,
+                                                       @RequestParam(required = false) String month) {
+        if (!principal.isSuperAdmin()) {
+            return Result.error(StatusCode.FAIL, "权限不足，非超级管理员");
+        }
+        YearMonth target;
+        try {
+            target = month == null ? YearMonth.now().minusMonths(1) : YearMonth.parse(month);
+        } catch (DateTimeParseException e) {
+            return Result.error(StatusCode.FAIL, "月份格式错误，应为yyyy-MM");
+        }
+        return Result.success(ledgerService.reconcile(target));
+    }
+
+    // 资金操作发件箱：pending/failed/lagSeconds及本进程处理统计
+    @GetMapping("/outbox")
+    public Result<Map<String, Object>> getOutboxStats(AuthPrincipal principal) {
+        if (!principal.isSuperAdmin()) {
+            return Result.error(StatusCode.FAIL, "权限不足，非超级管理员");
+        }
+        return Result.success(outboxService.stats());
+    }
+
+    // 定时任务：running/runs/skipped/failures/lastDurationMillis/lastLagMillis/lastRows等
+    @GetMapping("/jobs")
+    public Result<Map<String, Map<String, Object>>> getJobStats(AuthPrincipal principal) {
+        if (!principal.isSuperAdmin()) {
+            return Result.error(StatusCode.FAIL, "权限不足，非超级管理员");
+        }
+        return Result.success(jobMonitor.stats());
+    }
+
+    // 通知批量写入：written/batches
+    @GetMapping("/notification_writer")
+    public Result<Map<String, Long>> getNotificationWriterStats(AuthPrincipal principal) {
+        if (!principal.isSuperAdmin()) {
+            return Result.error(StatusCode.FAIL, "权限不足，非超级管理员");
+        }
+        return Result.success(notificationWriter.stats());
+    }
+}
@@ -1,6 +1,7 @@
 // PingpongSystem/src/main/java/org/example/pingpongsystem/controller/PaymentController.java
 package org.example.pingpongsystem.controller;
 
+import org.example.pingpongsystem.dto.PaymentRecordSliceDTO;
 import org.example.pingpongsystem.entity.PaymentRecordEntity;
 import org.example.pingpongsystem.service.PaymentService;
 import org.example.pingpongsystem.utility.Result;
@@ -63,4 +64,15 @@ public class PaymentController {
         int actualPage = Math.max(page - 1, 0);
         return paymentService.getPaymentRecords(studentId, actualPage, size, status, method);
     }
-}
\ No newline at end of file
+
+    // 交易记录游标分页（不统计总数，翻页更快）：翻页时传回上一页的nextCursor
+    @GetMapping("/records_slice")
+    public Result<PaymentRecordSliceDTO> getPaymentRecordSlice(
+            @RequestParam Long studentId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String method) {
+        return paymentService.getPaymentRecordSlice(null, studentId, status, method, cursor, size);
+    }
+}
@@ -2,6 +2,8 @@ package org.example.pingpongsystem.controller;
 
 import lombok.Data;
 import org.example.pingpongsystem.dto.ActivationExpiryDTO;
+import org.example.pingpongsystem.dto.AuthPrincipal;
+import org.example.pingpongsystem.dto.PaymentRecordSliceDTO;
 import org.example.pingpongsystem.entity.*;
 import org.example.pingpongsystem.service.*;
 import org.example.pingpongsystem.utility.Result;
@@ -21,18 +23,15 @@ public class SuperAdminController {
     private final AdminService adminService;
     private final PaymentService paymentService;
     private final SystemActivationService activationService;
-    private final TokenService tokenService;
 
     public SuperAdminController(SuperAdminService superAdminService,
                                 AdminService adminService,
                                 PaymentService paymentService,
-                                SystemActivationService systemActivationService,
-                                TokenService tokenService) {
+                                SystemActivationService systemActivationService) {
         this.superAdminService = superAdminService;
         this.adminService = adminService;
         this.paymentService = paymentService;
         this.activationService = systemActivationService;
-        this.tokenService = tokenService;
     }
 
     @PostMapping("/login")
@@ -144,40 +143,40 @@ public class SuperAdminController {
     // 新增：分页查询所有校区学生（支持筛选）
     @GetMapping("/all-students")
     public Result<Page<StudentEntity>> getAllStudents(
-            @RequestParam String token,
+            AuthPrincipal principal,
             @RequestParam(required = false) Long schoolId,
             @RequestParam(required = false) String name,
             @RequestParam(defaultValue = "1") Integer pageNum,
             @RequestParam(defaultValue = "10") Integer pageSize) {
-        return superAdminService.getAllStudentsWithPage(token, schoolId, name, pageNum, pageSize);
+        return superAdminService.getAllStudentsWithPage(principal, schoolId, name, pageNum, pageSize);
     }
 
     // 新增：分页查询所有已认证教练（支持筛选）
     @GetMapping("/all-certified-coaches")
     public Result<Page<CoachEntity>> getAllCertifiedCoaches(
-            @RequestParam String token,
+            AuthPrincipal principal,
             @RequestParam(required = false) Long schoolId,
             @RequestParam(required = false) String name,
             @RequestParam(required = false) Integer level,
             @RequestParam(defaultValue = "1") Integer pageNum,
             @RequestParam(defaultValue = "10") Integer pageSize) {
-        return superAdminService.getAllCertifiedCoachesWithPage(token, schoolId, name, level, pageNum, pageSize);
+        return superAdminService.getAllCertifiedCoachesWithPage(principal, schoolId, name, level, pageNum, pageSize);
     }
 
     // 新增：超级管理员更新学生信息
     @PostMapping("/update-student")
     public Result<StudentEntity> updateStudent(
-            @RequestParam String token,
+            AuthPrincipal principal,
             @RequestBody StudentEntity student) {
-        return superAdminService.updateStudent(token, student);
+        return superAdminService.updateStudent(principal, student);
     }
 
     // 新增：超级管理员更新已认证教练信息
     @PostMapping("/update-certified-coach")
     public Result<CoachEntity> updateCertifiedCoach(
-            @RequestParam String token,
+            AuthPrincipal principal,
             @RequestBody CoachEntity coach) {
-        return superAdminService.updateCertifiedCoach(token, coach);
+        return superAdminService.updateCertifiedCoach(principal, coach);
     }
 
     @PostMapping("/recharge")
@@ -213,23 +212,33 @@ public class SuperAdminController {
         return activationService.verifyDevice(activeActivation.get().getSecretKey(), deviceId);
     }
 
+    // 全部学员的交易记录（游标分页，可按校区/状态/支付方式/学员筛选）
+    @GetMapping("/payment_records")
+    public Result<PaymentRecordSliceDTO> getPaymentRecords(
+            AuthPrincipal principal,
+            @RequestParam(required = false) Long schoolId,
+            @RequestParam(required = false) Long studentId,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String method,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        if (!principal.isSuperAdmin()) {
+            return Result.error(StatusCode.FAIL, "权限不足，非超级管理员");
+        }
+        return paymentService.getPaymentRecordSlice(schoolId, studentId, status, method, cursor, size);
+    }
+
     /**
      * 新增：获取当前设备的激活过期信息（需超级管理员权限）
-     * @param token 超级管理员登录token（权限验证）
+     * @param principal 登录身份（由token参数解析，拦截器已校验有效性）
      * @param deviceId 设备唯一标识（匹配激活记录）
      * @return 激活状态+到期时间
      */
     @GetMapping("/get_activation_expiry")
     public Result<ActivationExpiryDTO> getActivationExpiry(
-            @RequestParam String token,
+            AuthPrincipal principal,
             @RequestParam String deviceId) {
-        // 1. 先验证token有效性（超级管理员权限）
-        Result<InfoAns> infoResult = tokenService.getInfo(token);
-        if (!infoResult.isSuccess()) {
-            return Result.error(StatusCode.FAIL, "令牌无效：" + infoResult.getMessage());
-        }
-
-        // 2. 调用Service获取过期信息
+        // 调用Service获取过期信息
         return activationService.getActivationExpiry(deviceId);
     }
 
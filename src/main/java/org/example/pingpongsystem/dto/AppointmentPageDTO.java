@@ -0,0 +1,20 @@
+package org.example.pingpongsystem.dto;
+
+import lombok.Data;
+import org.example.pingpongsystem.entity.CourseAppointmentEntity;
+
+import java.util.List;
+
+/**
+ * 预约列表的一页：按开始时间升序，nextCursor为空表示没有更多
+ */
+@Data
+public class AppointmentPageDTO {
+    private List<CourseAppointmentEntity> items;
+    private String nextCursor; // 下一页游标，原样传回即可
+
+    public AppointmentPageDTO(List<CourseAppointmentEntity> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+}
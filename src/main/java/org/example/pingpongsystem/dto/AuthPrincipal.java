@@ -0,0 +1,28 @@
+package org.example.pingpongsystem.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 当前请求的登录身份（由AuthPrincipalInterceptor按token解析一次，注入到Controller参数）
+ * 只包含鉴权所需字段，不含密码等资料
+ */
+@Getter
+@AllArgsConstructor
+public class AuthPrincipal {
+    // 请求属性名，拦截器写入、参数解析器读取
+    public static final String REQUEST_ATTRIBUTE = AuthPrincipal.class.getName();
+
+    private final String role; // super_admin/admin/coach/student
+    private final Long userId;
+    private final Long schoolId; // 教练、学员所属校区，管理员为null
+
+    public boolean isSuperAdmin() {
+        return "super_admin".equals(role);
+    }
+
+    // 管理员或超级管理员
+    public boolean isAdmin() {
+        return "admin".equals(role) || isSuperAdmin();
+    }
+}
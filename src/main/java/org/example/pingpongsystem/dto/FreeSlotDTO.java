@@ -0,0 +1,18 @@
+package org.example.pingpongsystem.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class FreeSlotDTO {
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private Long tableId; // 整个时间段都空闲的球台（自动分配时也可能分到其他空闲球台）
+
+    public FreeSlotDTO(LocalDateTime startTime, LocalDateTime endTime, Long tableId) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.tableId = tableId;
+    }
+}
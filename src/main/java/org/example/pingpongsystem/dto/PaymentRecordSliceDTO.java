@@ -0,0 +1,22 @@
+package org.example.pingpongsystem.dto;
+
+import lombok.Data;
+import org.example.pingpongsystem.entity.PaymentRecordEntity;
+
+import java.util.List;
+
+/**
+ * 交易记录的一页（按时间倒序，不统计总数）
+ */
+@Data
+public class PaymentRecordSliceDTO {
+    private List<PaymentRecordEntity> items;
+    private String nextCursor; // 下一页游标，为空表示没有更多
+    private Long approximateTotal; // 缓存的总数（可能略有延迟），尚未统计完成时为空
+
+    public PaymentRecordSliceDTO(List<PaymentRecordEntity> items, String nextCursor, Long approximateTotal) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.approximateTotal = approximateTotal;
+    }
+}
@@ -0,0 +1,23 @@
+package org.example.pingpongsystem.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 连续多周预约中单次课程的结果
+ */
+@Data
+public class SeriesOccurrenceDTO {
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private Long tableId; // 分配的球台
+    private Long appointmentId; // 预约成功后的预约ID
+    private boolean success;
+    private String message; // 失败原因
+
+    public SeriesOccurrenceDTO(LocalDateTime startTime, LocalDateTime endTime) {
+        this.startTime = startTime;
+        this.endTime = endTime;
+    }
+}
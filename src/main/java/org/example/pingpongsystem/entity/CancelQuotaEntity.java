@@ -0,0 +1,31 @@
+package org.example.pingpongsystem.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * 每月取消次数：(发起人类型, 用户ID, 月份) -> 有效取消次数（待确认 + 已确认）
+ * 占用次数用条件UPDATE（used < 上限）完成检查和累加，多个节点共用同一份计数
+ */
+@Entity
+@Data
+@Table(indexes = {
+        @Index(name = "uk_cancel_quota_user_month", columnList = "userType, userId, quotaMonth", unique = true)
+})
+public class CancelQuotaEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 20)
+    private String userType; // STUDENT/COACH
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @Column(nullable = false, length = 7)
+    private String quotaMonth; // 月份，如2025-09
+
+    @Column(nullable = false)
+    private Integer used; // 本月有效取消次数
+}
@@ -7,6 +7,11 @@ import java.time.LocalDateTime;
 
 @Entity
 @Data
+@Table(indexes = {
+        // 按发起人统计某月取消次数（建立取消次数计数行时使用）
+        @Index(name = "idx_cancel_record_student", columnList = "userType, studentId, createTime"),
+        @Index(name = "idx_cancel_record_coach", columnList = "userType, coachId, createTime")
+})
 public class CancelRecordEntity {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -14,7 +14,7 @@ public class CoachAccountEntity {
     private Long coachId; // 教练ID
 
     @Column(nullable = false)
-    private Double balance = 0.0; // 账户余额，默认为0
+    private Double balance = 0.0; // 启用账本前的余额（已记为期初余额），当前余额以账本为准（LedgerService）
 
     @Version
     private Integer version; // 用于乐观锁
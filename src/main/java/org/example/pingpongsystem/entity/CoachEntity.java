@@ -8,6 +8,10 @@ import lombok.Data;
 
 @Entity
 @Data
+@Table(indexes = {
+        // 按校区查询成员（管理员列表、校区公告）
+        @Index(name = "idx_coach_school", columnList = "schoolId")
+})
 public class CoachEntity {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -7,6 +7,19 @@ import java.time.LocalDateTime;
 
 @Entity
 @Data
+@Table(indexes = {
+        // 学员/教练预约列表按开始时间游标分页（InnoDB二级索引自带主键，(startTime, id)有序）
+        @Index(name = "idx_appt_student_start", columnList = "studentId, startTime"),
+        @Index(name = "idx_appt_coach_start", columnList = "coachId, startTime"),
+        // 定时任务按状态和结束时间范围扫描已结束的课程
+        @Index(name = "idx_appt_status_end", columnList = "status, endTime"),
+        // 课程提醒按状态和开始时间范围增量加载
+        @Index(name = "idx_appt_status_start", columnList = "status, startTime"),
+        // 预约事务内（球台行锁下）以数据库为准检查球台时段冲突，以及空闲球台查询
+        @Index(name = "idx_appt_table_start", columnList = "tableId, startTime"),
+        // 按校区加载尚未结束的预约（球台占用索引定时重新加载）
+        @Index(name = "idx_appt_school_end", columnList = "schoolId, endTime")
+})
 public class CourseAppointmentEntity {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -38,6 +51,10 @@ public class CourseAppointmentEntity {
 
     private Long paymentRecordId;  // 关联支付记录ID
 
+    // 已发送上课提醒的时间，为空表示未提醒；只由提醒任务用条件UPDATE写入
+    @Column(insertable = false, updatable = false)
+    private LocalDateTime reminderSentTime;
+
     @Version
     private Integer version;
 
@@ -0,0 +1,34 @@
+package org.example.pingpongsystem.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 集群任务租约：同一时刻只有租约持有节点执行对应任务（或任务分片）
+ * 持有节点定时续期，节点宕机后租约过期，由其他节点接管；节点在线状态也以"node:"开头的租约记录
+ * 时间统一取数据库时间，避免各节点时钟不一致
+ */
+@Entity
+@Data
+@Table(indexes = {
+        @Index(name = "uk_job_lease_name", columnList = "jobName", unique = true),
+        @Index(name = "idx_job_lease_owner", columnList = "owner")
+})
+public class JobLeaseEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 150)
+    private String jobName; // 任务名，分片任务为"任务名#分片号"
+
+    @Column(length = 100)
+    private String owner; // 持有节点ID，为空表示无人持有
+
+    @Column(nullable = false)
+    private LocalDateTime leaseUntil; // 租约到期时间
+
+    private LocalDateTime heartbeatTime; // 最近一次获取或续期的时间
+}
@@ -0,0 +1,65 @@
+package org.example.pingpongsystem.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 账本分录（只插入、不修改）：同一笔业务的多条分录共用journalId，金额（分）合计为0
+ * 账户余额 = 快照余额 + 快照之后该账户分录金额之和
+ */
+@Entity
+@Data
+@Table(indexes = {
+        // 按账户读取快照之后的分录
+        @Index(name = "idx_ledger_account", columnList = "accountType, accountId, id"),
+        @Index(name = "idx_ledger_journal", columnList = "journalId"),
+        // 月度对账按时间范围扫描
+        @Index(name = "idx_ledger_create_time", columnList = "createTime")
+})
+public class LedgerEntryEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 36)
+    private String journalId; // 同一笔业务的分录共用
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private AccountType accountType;
+
+    @Column(nullable = false)
+    private Long accountId; // 学员ID/教练ID，平台账户为0
+
+    @Column(nullable = false)
+    private Long amountCents; // 金额（分），正数为增加，负数为减少
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private EntryType entryType;
+
+    private Long relatedId; // 关联ID（支付记录ID、预约ID或提现申请ID）
+
+    @Column(nullable = false)
+    private LocalDateTime createTime;
+
+    public enum AccountType {
+        STUDENT,  // 学员余额
+        COACH,    // 教练余额
+        ESCROW,   // 平台代收的课程费（课程完成后转给教练，取消/拒绝时退回学员）
+        REVENUE,  // 平台收入（月赛报名费）
+        CASH      // 外部资金往来（充值、提现）
+    }
+
+    public enum EntryType {
+        OPENING,        // 启用账本时的期初余额
+        RECHARGE,       // 学员充值
+        COURSE_PAYMENT, // 学员支付课程费
+        MATCH_FEE,      // 学员支付月赛报名费
+        REFUND,         // 退款
+        COURSE_INCOME,  // 教练课程收入
+        WITHDRAW        // 教练提现
+    }
+}
@@ -0,0 +1,35 @@
+package org.example.pingpongsystem.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 账户余额快照：截至lastEntryId（含）的余额，由定时任务滚动更新
+ */
+@Entity
+@Data
+@Table(indexes = {
+        @Index(name = "uk_ledger_snapshot_account", columnList = "accountType, accountId", unique = true)
+})
+public class LedgerSnapshotEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private LedgerEntryEntity.AccountType accountType;
+
+    @Column(nullable = false)
+    private Long accountId;
+
+    @Column(nullable = false)
+    private Long balanceCents; // 快照余额（分）
+
+    @Column(nullable = false)
+    private Long lastEntryId; // 快照包含的最后一条分录ID
+
+    private LocalDateTime snapshotTime;
+}
@@ -0,0 +1,42 @@
+package org.example.pingpongsystem.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 通知归档表：超过保留期的已读通知从notification_entity移到这里，保持原ID
+ * 热表只保留近期通知和未读通知，未读查询不随历史增长变慢；历史查询合并两张表
+ */
+@Entity
+@Data
+@Table(indexes = {
+        // 按用户倒序翻看历史通知
+        @Index(name = "idx_notification_archive_user", columnList = "userId, userType, id")
+})
+public class NotificationArchiveEntity {
+    @Id
+    private Long id; // 与原通知ID相同
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private NotificationEntity.UserType userType;
+
+    private Long appointmentId;
+    private Long changeRequestId;
+
+    // 与热表一致用varchar：原生enum列遇到未定义的类型时，INSERT IGNORE会静默写入空串
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, columnDefinition = "varchar(32)")
+    private NotificationEntity.NotificationType type;
+
+    @Column(nullable = false)
+    private String content;
+
+    private LocalDateTime createTime; // 通知创建时间
+    private LocalDateTime archiveTime; // 归档时间
+}
@@ -0,0 +1,28 @@
+package org.example.pingpongsystem.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * 用户未读通知计数：随通知写入累加、随标记已读扣减，未读角标直接读取，不再统计通知表
+ */
+@Entity
+@Data
+@Table(indexes = {
+        @Index(name = "uk_notification_counter_user", columnList = "userId, userType", unique = true)
+})
+public class NotificationCounterEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private NotificationEntity.UserType userType;
+
+    @Column(nullable = false)
+    private Long unreadCount; // 未读通知数
+}
@@ -7,6 +7,14 @@ import java.time.LocalDateTime;
 
 @Entity
 @Data
+@Table(indexes = {
+        // 按用户查询通知（断线重连按ID补发、历史翻页）
+        @Index(name = "idx_notification_user", columnList = "userId, userType, id"),
+        // 未读列表
+        @Index(name = "idx_notification_unread", columnList = "userId, userType, isRead"),
+        // 保留期清理：超过保留期的已读通知
+        @Index(name = "idx_notification_read_time", columnList = "isRead, createTime")
+})
 public class NotificationEntity {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -22,8 +30,9 @@ public class NotificationEntity {
     private Long appointmentId; // 关联的课程预约ID（可为空）
     private Long changeRequestId; // 关联的更换教练申请ID（可为空）
 
+    // 用varchar而不是MySQL原生enum：新增通知类型时不需要修改列定义（ddl-auto=update不会修改已有列）
     @Enumerated(EnumType.STRING)
-    @Column(nullable = false)
+    @Column(nullable = false, columnDefinition = "varchar(32)")
     private NotificationType type; // 通知类型
 
     @Column(nullable = false)
@@ -42,6 +51,7 @@ public class NotificationEntity {
         COURSE_EVALUATION, // 课程评价通知
         COACH_CHANGE_REQUEST, // 更换教练申请通知
         COACH_CHANGE_APPROVAL, // 更换教练审批结果通知
-        COURSE_REMINDER // 课程提醒通知
+        COURSE_REMINDER, // 课程提醒通知
+        ANNOUNCEMENT // 校区公告
     }
 }
\ No newline at end of file
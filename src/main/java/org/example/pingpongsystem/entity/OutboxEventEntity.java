@@ -0,0 +1,59 @@
+package org.example.pingpongsystem.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 待执行的资金操作（发件箱）：与业务状态变更在同一事务中写入，由OutboxWorker在后台执行
+ */
+@Entity
+@Data
+@Table(indexes = {
+        // 同一操作只登记一次（幂等）
+        @Index(name = "uk_outbox_event", columnList = "eventType, relatedId", unique = true),
+        // 后台按状态和下次执行时间取待处理事件
+        @Index(name = "idx_outbox_status_next", columnList = "status, nextAttemptAt")
+})
+public class OutboxEventEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private EventType eventType;
+
+    @Column(nullable = false)
+    private Long relatedId; // REFUND：支付记录ID；COACH_SETTLEMENT：预约ID
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    @Column(nullable = false)
+    private Integer attempts; // 已失败次数
+
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt; // 下次可执行时间（失败后退避）
+
+    @Column(length = 500)
+    private String lastError;
+
+    @Column(nullable = false)
+    private LocalDateTime createTime;
+
+    private LocalDateTime processedTime;
+
+    public enum EventType {
+        REFUND,           // 退款给学员
+        COACH_SETTLEMENT  // 课程完成后给教练结算课时费
+    }
+
+    public enum Status {
+        PENDING, // 待执行
+        DONE,    // 已执行
+        FAILED   // 超过重试次数，需人工处理
+    }
+}
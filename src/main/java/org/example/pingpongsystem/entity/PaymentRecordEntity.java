@@ -7,6 +7,12 @@ import java.time.LocalDateTime;
 
 @Entity
 @Data
+@Table(indexes = {
+        // 学员交易记录按时间倒序分页
+        @Index(name = "idx_payment_student_create", columnList = "studentId, createTime"),
+        // 管理端按状态查看交易记录
+        @Index(name = "idx_payment_status_create", columnList = "status, createTime")
+})
 public class PaymentRecordEntity {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,35 @@
+package org.example.pingpongsystem.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 已登出的签名token（按jti记录），保留到token原本的过期时间
+ * 各节点定时同步到内存中的登出集合，登出对所有节点生效，重启后仍然有效
+ */
+@Entity
+@Data
+@Table(indexes = {
+        // 同一token只记录一次
+        @Index(name = "uk_revoked_token_jti", columnList = "jti", unique = true),
+        // 各节点按登记时间增量同步
+        @Index(name = "idx_revoked_token_create_time", columnList = "createTime"),
+        // 启动加载和过期清理按过期时间扫描
+        @Index(name = "idx_revoked_token_expire_time", columnList = "expireTime")
+})
+public class RevokedTokenEntity {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 32)
+    private String jti; // token唯一标识
+
+    @Column(nullable = false)
+    private LocalDateTime expireTime; // token原本的过期时间，之后记录即可删除
+
+    @Column(nullable = false)
+    private LocalDateTime createTime; // 登出时间
+}
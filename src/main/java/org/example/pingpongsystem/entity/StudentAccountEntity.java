@@ -2,6 +2,7 @@ package org.example.pingpongsystem.entity;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.example.pingpongsystem.utility.MoneyUtil;
 
 @Entity
 @Data
@@ -13,8 +14,16 @@ public class StudentAccountEntity {
     @Column(nullable = false)
     private Long studentId; // 关联学员ID
 
-    private Double balance = 0.0; // 账户余额，默认0
+    private Double balance = 0.0; // 账户余额（元），默认0，与balanceCents同步，仅用于展示
+
+    private Long balanceCents = 0L; // 账户余额（分），扣款/充值以此为准（StudentAccountRepository.debit/credit）
 
     @Version
     private Integer version; // 乐观锁
-}
\ No newline at end of file
+
+    // 新建账户时设置余额，同时换算为分
+    public void setBalance(Double balance) {
+        this.balance = balance;
+        this.balanceCents = balance == null ? null : MoneyUtil.toCents(balance);
+    }
+}
@@ -4,8 +4,16 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import lombok.Data;
 
+import java.time.LocalDateTime;
+
 @Entity
 @Data
+@Table(indexes = {
+        // token按值查询（每个请求都会用到），唯一索引避免全表扫描
+        @Index(name = "uk_token_value", columnList = "token", unique = true),
+        // 过期清理按过期时间范围扫描
+        @Index(name = "idx_token_expire_time", columnList = "expireTime")
+})
 public class TokenEntity {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -25,6 +33,10 @@ public class TokenEntity {
 
     private Long userId;
 
+    private LocalDateTime expireTime; // 过期时间（滑动续期）
+
+    private LocalDateTime lastAccessTime; // 最近一次续期时间
+
     @Version
     private Integer version;
 }
@@ -0,0 +1,74 @@
+package org.example.pingpongsystem.interceptor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.example.pingpongsystem.dto.AuthPrincipal;
+import org.example.pingpongsystem.service.TokenService;
+import org.example.pingpongsystem.utility.Result;
+import org.example.pingpongsystem.utility.StatusCode;
+import org.springframework.core.MethodParameter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.io.PrintWriter;
+
+/**
+ * 登录身份拦截器：仅对参数中声明了AuthPrincipal的接口生效
+ * 每个请求只解析一次token，结果放入请求属性，由AuthPrincipalArgumentResolver注入
+ */
+@Component
+public class AuthPrincipalInterceptor implements HandlerInterceptor {
+    private final TokenService tokenService;
+    private final ObjectMapper objectMapper;
+
+    public AuthPrincipalInterceptor(TokenService tokenService, ObjectMapper objectMapper) {
+        this.tokenService = tokenService;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        // 1. 接口不需要登录身份时直接放行
+        if (!(handler instanceof HandlerMethod handlerMethod) || !requiresPrincipal(handlerMethod)) {
+            return true;
+        }
+
+        // 2. token兼容原有的请求参数方式，也支持放在请求头中
+        String token = request.getParameter("token");
+        if (token == null || token.isEmpty()) {
+            token = request.getHeader("token");
+        }
+        if (token == null || token.isEmpty()) {
+            writeError(response, "缺少token");
+            return false;
+        }
+
+        // 3. 解析身份（走会话缓存），失败直接返回错误
+        Result<AuthPrincipal> principalResult = tokenService.resolvePrincipal(token);
+        if (!principalResult.isSuccess()) {
+            writeError(response, "令牌无效：" + principalResult.getMessage());
+            return false;
+        }
+        request.setAttribute(AuthPrincipal.REQUEST_ATTRIBUTE, principalResult.getData());
+        return true;
+    }
+
+    private boolean requiresPrincipal(HandlerMethod handlerMethod) {
+        for (MethodParameter parameter : handlerMethod.getMethodParameters()) {
+            if (AuthPrincipal.class.equals(parameter.getParameterType())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeError(HttpServletResponse response, String message) throws Exception {
+        response.setContentType("application/json;charset=UTF-8");
+        PrintWriter out = response.getWriter();
+        out.write(objectMapper.writeValueAsString(Result.error(StatusCode.FAIL, message)));
+        out.flush();
+        out.close();
+    }
+}
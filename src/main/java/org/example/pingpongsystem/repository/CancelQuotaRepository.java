@@ -0,0 +1,50 @@
+package org.example.pingpongsystem.repository;
+
+import org.example.pingpongsystem.entity.CancelQuotaEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+// 计数行首次读取或占用时按取消记录统计初始值（PENDING + APPROVED），之后只做条件加减
+@Repository
+public interface CancelQuotaRepository extends JpaRepository<CancelQuotaEntity, Long> {
+
+    @Query("SELECT q.used FROM CancelQuotaEntity q " +
+            "WHERE q.userType = :userType AND q.userId = :userId AND q.quotaMonth = :quotaMonth")
+    Integer findUsed(String userType, Long userId, String quotaMonth);
+
+    // 建立学员的计数行（已存在则忽略），初始值按学员发起的取消记录统计，走(userType, studentId, createTime)索引
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO cancel_quota_entity (user_type, user_id, quota_month, used) " +
+            "SELECT 'STUDENT', :studentId, :quotaMonth, COUNT(*) FROM cancel_record_entity " +
+            "WHERE user_type = 'STUDENT' AND student_id = :studentId " +
+            "AND create_time >= :monthStart AND create_time < :nextMonthStart AND status IN ('PENDING', 'APPROVED')",
+            nativeQuery = true)
+    int createStudentIfAbsent(Long studentId, String quotaMonth, LocalDateTime monthStart, LocalDateTime nextMonthStart);
+
+    // 建立教练的计数行（已存在则忽略），初始值按教练发起的取消记录统计，走(userType, coachId, createTime)索引
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO cancel_quota_entity (user_type, user_id, quota_month, used) " +
+            "SELECT 'COACH', :coachId, :quotaMonth, COUNT(*) FROM cancel_record_entity " +
+            "WHERE user_type = 'COACH' AND coach_id = :coachId " +
+            "AND create_time >= :monthStart AND create_time < :nextMonthStart AND status IN ('PENDING', 'APPROVED')",
+            nativeQuery = true)
+    int createCoachIfAbsent(Long coachId, String quotaMonth, LocalDateTime monthStart, LocalDateTime nextMonthStart);
+
+    // 未达上限时次数加1，返回影响行数（0表示已达上限）
+    @Modifying
+    @Query(value = "UPDATE cancel_quota_entity SET used = used + 1 " +
+            "WHERE user_type = :userType AND user_id = :userId AND quota_month = :quotaMonth AND used < :limit",
+            nativeQuery = true)
+    int increment(String userType, Long userId, String quotaMonth, int limit);
+
+    // 归还一次（不低于0）
+    @Modifying
+    @Query(value = "UPDATE cancel_quota_entity SET used = used - 1 " +
+            "WHERE user_type = :userType AND user_id = :userId AND quota_month = :quotaMonth AND used > 0",
+            nativeQuery = true)
+    int decrement(String userType, Long userId, String quotaMonth);
+}
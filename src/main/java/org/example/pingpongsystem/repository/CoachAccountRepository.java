@@ -1,11 +1,25 @@
 package org.example.pingpongsystem.repository;
 
+import jakarta.persistence.LockModeType;
 import org.example.pingpongsystem.entity.CoachAccountEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface CoachAccountRepository extends JpaRepository<CoachAccountEntity, Long> {
     Optional<CoachAccountEntity> findByCoachId(Long coachId);
     boolean existsByCoachId(Long coachId);
+
+    // 给定教练中已开户的教练ID
+    @Query("SELECT a.coachId FROM CoachAccountEntity a WHERE a.coachId IN :coachIds")
+    List<Long> findExistingCoachIds(Collection<Long> coachIds);
+
+    // 提现时锁定教练账户行，同一教练的提现串行检查余额
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM CoachAccountEntity a WHERE a.coachId = :coachId")
+    Optional<CoachAccountEntity> findByCoachIdForUpdate(Long coachId);
 }
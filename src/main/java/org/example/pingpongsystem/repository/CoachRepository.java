@@ -1,12 +1,16 @@
 package org.example.pingpongsystem.repository;
 
+import jakarta.persistence.LockModeType;
 import org.example.pingpongsystem.entity.CoachEntity;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface CoachRepository extends JpaRepository<CoachEntity, Long>, JpaSpecificationExecutor<CoachEntity> {
 
@@ -23,4 +27,9 @@ public interface CoachRepository extends JpaRepository<CoachEntity, Long>, JpaSp
 
     // 分页查询所有已认证教练
     Page<CoachEntity> findByIsCertifiedTrue(Pageable pageable);
+
+    // 预约时锁定教练行（在球台行之后加锁），同一教练的预约事务跨节点串行
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM CoachEntity c WHERE c.id = :id")
+    Optional<CoachEntity> findByIdForUpdate(Long id);
 }
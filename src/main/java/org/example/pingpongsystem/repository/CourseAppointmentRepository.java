@@ -1,10 +1,15 @@
 package org.example.pingpongsystem.repository;
 
 import org.example.pingpongsystem.entity.CourseAppointmentEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -24,4 +29,73 @@ public interface CourseAppointmentRepository extends JpaRepository<CourseAppoint
             Long tableId, LocalDateTime endTime, LocalDateTime startTime);
     //查询教练的预约
     List<CourseAppointmentEntity> findByCoachId(Long coachId);
-}
\ No newline at end of file
+
+    // 球台在指定时间段是否有占用中的预约（只统计指定状态）
+    boolean existsByTableIdAndStatusInAndStartTimeLessThanAndEndTimeGreaterThan(
+            Long tableId, List<CourseAppointmentEntity.AppointmentStatus> statuses,
+            LocalDateTime endTime, LocalDateTime startTime);
+
+    // 校区内尚未结束的指定状态预约（加载球台占用索引）
+    List<CourseAppointmentEntity> findBySchoolIdAndStatusInAndEndTimeAfter(
+            Long schoolId, List<CourseAppointmentEntity.AppointmentStatus> statuses, LocalDateTime endTime);
+
+    // 教练在时间范围内是否已有指定状态的预约（预约事务内防止教练同一时段两节课，走coachId+startTime索引）
+    boolean existsByCoachIdAndStatusInAndStartTimeLessThanAndEndTimeGreaterThan(
+            Long coachId, List<CourseAppointmentEntity.AppointmentStatus> statuses,
+            LocalDateTime endTime, LocalDateTime startTime);
+
+    // 与时间范围有重叠的指定状态预约（空闲时段计算，按教练/按校区）
+    List<CourseAppointmentEntity> findByCoachIdAndStatusInAndStartTimeLessThanAndEndTimeGreaterThan(
+            Long coachId, List<CourseAppointmentEntity.AppointmentStatus> statuses,
+            LocalDateTime endTime, LocalDateTime startTime);
+
+    List<CourseAppointmentEntity> findBySchoolIdAndStatusInAndStartTimeLessThanAndEndTimeGreaterThan(
+            Long schoolId, List<CourseAppointmentEntity.AppointmentStatus> statuses,
+            LocalDateTime endTime, LocalDateTime startTime);
+
+    // 多张球台在时间范围内的指定状态预约（连续多周预约的冲突检查）
+    List<CourseAppointmentEntity> findByTableIdInAndStatusInAndStartTimeLessThanAndEndTimeGreaterThan(
+            Collection<Long> tableIds, List<CourseAppointmentEntity.AppointmentStatus> statuses,
+            LocalDateTime endTime, LocalDateTime startTime);
+
+    // 学员/教练预约列表游标分页：按(startTime, id)升序取游标之后的记录，状态和结束时间为空时不过滤
+    @Query("SELECT a FROM CourseAppointmentEntity a WHERE a.studentId = :studentId " +
+            "AND a.startTime >= :from AND (:to IS NULL OR a.startTime < :to) " +
+            "AND (:status IS NULL OR a.status = :status) " +
+            "AND (a.startTime > :cursorTime OR (a.startTime = :cursorTime AND a.id > :cursorId)) " +
+            "ORDER BY a.startTime, a.id")
+    List<CourseAppointmentEntity> findStudentPage(Long studentId, CourseAppointmentEntity.AppointmentStatus status,
+                                                  LocalDateTime from, LocalDateTime to,
+                                                  LocalDateTime cursorTime, Long cursorId, Pageable pageable);
+
+    @Query("SELECT a FROM CourseAppointmentEntity a WHERE a.coachId = :coachId " +
+            "AND a.startTime >= :from AND (:to IS NULL OR a.startTime < :to) " +
+            "AND (:status IS NULL OR a.status = :status) " +
+            "AND (a.startTime > :cursorTime OR (a.startTime = :cursorTime AND a.id > :cursorId)) " +
+            "ORDER BY a.startTime, a.id")
+    List<CourseAppointmentEntity> findCoachPage(Long coachId, CourseAppointmentEntity.AppointmentStatus status,
+                                                LocalDateTime from, LocalDateTime to,
+                                                LocalDateTime cursorTime, Long cursorId, Pageable pageable);
+
+    // 指定状态、在before之前结束的课程，按(endTime, id)游标分批读取；只取id % shardCount == shard的分片
+    @Query("SELECT a FROM CourseAppointmentEntity a WHERE a.status = :status AND a.endTime < :before " +
+            "AND (a.endTime > :cursorTime OR (a.endTime = :cursorTime AND a.id > :cursorId)) " +
+            "AND MOD(a.id, :shardCount) = :shard " +
+            "ORDER BY a.endTime, a.id")
+    List<CourseAppointmentEntity> findEndedChunk(CourseAppointmentEntity.AppointmentStatus status, LocalDateTime before,
+                                                 LocalDateTime cursorTime, Long cursorId,
+                                                 int shardCount, int shard, Pageable pageable);
+
+    // 开始时间在(from, to]内、尚未提醒的课程
+    @Query("SELECT a FROM CourseAppointmentEntity a WHERE a.status = :status AND a.startTime > :from " +
+            "AND a.startTime <= :to AND a.reminderSentTime IS NULL")
+    List<CourseAppointmentEntity> findReminderCandidates(CourseAppointmentEntity.AppointmentStatus status,
+                                                         LocalDateTime from, LocalDateTime to);
+
+    // 标记已提醒：仅当仍为指定状态且未提醒时成功，返回影响行数
+    @Transactional
+    @Modifying
+    @Query("UPDATE CourseAppointmentEntity a SET a.reminderSentTime = :sentTime " +
+            "WHERE a.id = :id AND a.status = :status AND a.reminderSentTime IS NULL")
+    int markReminderSent(Long id, CourseAppointmentEntity.AppointmentStatus status, LocalDateTime sentTime);
+}
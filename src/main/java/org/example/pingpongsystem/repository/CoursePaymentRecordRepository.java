@@ -2,11 +2,18 @@ package org.example.pingpongsystem.repository;
 
 import org.example.pingpongsystem.entity.CoursePaymentRecordEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface CoursePaymentRecordRepository extends JpaRepository<CoursePaymentRecordEntity, Long> {
     boolean existsByAppointmentId(Long appointmentId);
 
     Optional<CoursePaymentRecordEntity> findByAppointmentId(Long appointmentId);
+
+    // 给定预约中已结算的预约ID
+    @Query("SELECT r.appointmentId FROM CoursePaymentRecordEntity r WHERE r.appointmentId IN :appointmentIds")
+    List<Long> findSettledAppointmentIds(Collection<Long> appointmentIds);
 }
\ No newline at end of file
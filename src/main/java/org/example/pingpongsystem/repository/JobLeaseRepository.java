@@ -0,0 +1,60 @@
+package org.example.pingpongsystem.repository;
+
+import org.example.pingpongsystem.entity.JobLeaseEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+// 租约的获取、续期、释放都用数据库时间NOW(3)判断是否过期
+// 写操作都在独立事务中立即提交：定时任务本身带事务时，租约行不会在整个任务期间被锁住（否则心跳续期会被阻塞），
+// 任务回滚也不会撤销已获取的租约
+public interface JobLeaseRepository extends JpaRepository<JobLeaseEntity, Long> {
+
+    // 首次使用时创建租约记录（已存在则忽略）
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO job_lease_entity (job_name, lease_until) VALUES (:jobName, NOW(3))",
+            nativeQuery = true)
+    int createIfAbsent(String jobName);
+
+    // 获取或续期：租约属于自己、无人持有或已过期时成功，返回影响行数
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Modifying
+    @Query(value = "UPDATE job_lease_entity SET owner = :owner, " +
+            "lease_until = DATE_ADD(NOW(3), INTERVAL :ttlMillis * 1000 MICROSECOND), heartbeat_time = NOW(3) " +
+            "WHERE job_name = :jobName AND (owner = :owner OR owner IS NULL OR lease_until < NOW(3))",
+            nativeQuery = true)
+    int acquire(String jobName, String owner, long ttlMillis);
+
+    // 续期本节点持有且未过期的所有租约
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Modifying
+    @Query(value = "UPDATE job_lease_entity SET " +
+            "lease_until = DATE_ADD(NOW(3), INTERVAL :ttlMillis * 1000 MICROSECOND), heartbeat_time = NOW(3) " +
+            "WHERE owner = :owner AND lease_until >= NOW(3)",
+            nativeQuery = true)
+    int renewAll(String owner, long ttlMillis);
+
+    // 本节点当前持有（未过期）的租约
+    @Query(value = "SELECT job_name FROM job_lease_entity WHERE owner = :owner AND lease_until >= NOW(3)",
+            nativeQuery = true)
+    List<String> findHeldJobNames(String owner);
+
+    // 释放租约（仅本节点持有时）
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Modifying
+    @Query(value = "UPDATE job_lease_entity SET owner = NULL, lease_until = NOW(3) " +
+            "WHERE job_name = :jobName AND owner = :owner",
+            nativeQuery = true)
+    int release(String jobName, String owner);
+
+    // 名称以prefix开头且未过期的租约持有者（在线节点），按节点ID排序
+    @Query(value = "SELECT owner FROM job_lease_entity WHERE job_name LIKE CONCAT(:prefix, '%') " +
+            "AND owner IS NOT NULL AND lease_until >= NOW(3) ORDER BY owner",
+            nativeQuery = true)
+    List<String> findLiveOwners(String prefix);
+}
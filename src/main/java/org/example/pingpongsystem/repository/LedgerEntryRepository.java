@@ -0,0 +1,41 @@
+package org.example.pingpongsystem.repository;
+
+import jakarta.persistence.QueryHint;
+import org.example.pingpongsystem.entity.LedgerEntryEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntryEntity, Long> {
+
+    // 账户在某条分录之后的金额合计（余额 = 快照 + 该值），走(accountType, accountId, id)索引
+    @Query("SELECT COALESCE(SUM(e.amountCents), 0) FROM LedgerEntryEntity e " +
+            "WHERE e.accountType = :accountType AND e.accountId = :accountId AND e.id > :afterId")
+    long sumAfter(LedgerEntryEntity.AccountType accountType, Long accountId, long afterId);
+
+    // 早于cutoff的最大分录ID（快照只推进到已提交的分录）
+    @Query("SELECT MAX(e.id) FROM LedgerEntryEntity e WHERE e.createTime < :cutoff")
+    Long findMaxIdBefore(LocalDateTime cutoff);
+
+    // (fromId, toId]区间内各账户的金额合计
+    @Query("SELECT e.accountType, e.accountId, SUM(e.amountCents) FROM LedgerEntryEntity e " +
+            "WHERE e.id > :fromId AND e.id <= :toId GROUP BY e.accountType, e.accountId")
+    List<Object[]> sumByAccountBetween(long fromId, long toId);
+
+    // 流式读取时间范围内的分录（只取对账需要的列，MySQL按行流式返回，不占用持久化上下文）
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("SELECT e.accountType, e.amountCents FROM LedgerEntryEntity e " +
+            "WHERE e.createTime >= :from AND e.createTime < :to")
+    Stream<Object[]> streamAmounts(LocalDateTime from, LocalDateTime to);
+
+    // 时间范围内借贷不平的业务
+    @Query("SELECT e.journalId FROM LedgerEntryEntity e WHERE e.createTime >= :from AND e.createTime < :to " +
+            "GROUP BY e.journalId HAVING SUM(e.amountCents) <> 0")
+    List<String> findUnbalancedJournals(LocalDateTime from, LocalDateTime to);
+}
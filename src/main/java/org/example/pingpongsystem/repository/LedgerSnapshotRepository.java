@@ -0,0 +1,16 @@
+package org.example.pingpongsystem.repository;
+
+import org.example.pingpongsystem.entity.LedgerEntryEntity;
+import org.example.pingpongsystem.entity.LedgerSnapshotEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Optional;
+
+public interface LedgerSnapshotRepository extends JpaRepository<LedgerSnapshotEntity, Long> {
+    Optional<LedgerSnapshotEntity> findByAccountTypeAndAccountId(LedgerEntryEntity.AccountType accountType, Long accountId);
+
+    // 上次快照推进到的分录ID
+    @Query("SELECT COALESCE(MAX(s.lastEntryId), 0) FROM LedgerSnapshotEntity s")
+    long findLastEntryId();
+}
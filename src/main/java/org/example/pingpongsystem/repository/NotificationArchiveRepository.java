@@ -0,0 +1,42 @@
+package org.example.pingpongsystem.repository;
+
+import org.example.pingpongsystem.entity.NotificationArchiveEntity;
+import org.example.pingpongsystem.entity.NotificationEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface NotificationArchiveRepository extends JpaRepository<NotificationArchiveEntity, Long> {
+
+    // 用户在指定ID之前的归档通知（按ID倒序）
+    List<NotificationArchiveEntity> findByUserIdAndUserTypeAndIdLessThanOrderByIdDesc(
+            Long userId, NotificationEntity.UserType userType, Long id, Pageable pageable);
+
+    // 归档表通知类型列的数据类型（enum/varchar），启动时判断是否需要迁移
+    @Query(value = "SELECT DATA_TYPE FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() " +
+            "AND TABLE_NAME = 'notification_archive_entity' AND COLUMN_NAME = 'type'",
+            nativeQuery = true)
+    String findTypeColumnDataType();
+
+    // 把归档表的通知类型列改为varchar，与热表一致
+    @Transactional
+    @Modifying
+    @Query(value = "ALTER TABLE notification_archive_entity MODIFY type varchar(32) NOT NULL", nativeQuery = true)
+    void convertTypeColumnToVarchar();
+
+    // 把热表中的指定已读通知复制到归档表（在删除热表数据的同一事务中调用，重复执行时忽略已归档的ID）
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO notification_archive_entity (id, user_id, user_type, appointment_id, " +
+            "change_request_id, type, content, create_time, archive_time) " +
+            "SELECT id, user_id, user_type, appointment_id, change_request_id, type, content, create_time, NOW() " +
+            "FROM notification_entity WHERE id IN (:ids) AND is_read = true",
+            nativeQuery = true)
+    int copyFromNotifications(Collection<Long> ids);
+}
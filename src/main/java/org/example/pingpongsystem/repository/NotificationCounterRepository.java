@@ -0,0 +1,49 @@
+package org.example.pingpongsystem.repository;
+
+import org.example.pingpongsystem.entity.NotificationCounterEntity;
+import org.example.pingpongsystem.entity.NotificationEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface NotificationCounterRepository extends JpaRepository<NotificationCounterEntity, Long> {
+
+    @Query("SELECT c.unreadCount FROM NotificationCounterEntity c WHERE c.userId = :userId AND c.userType = :userType")
+    Long findUnreadCount(Long userId, NotificationEntity.UserType userType);
+
+    // 扣减未读数（在标记已读的同一事务中调用，count为实际标记的条数）
+    @Modifying
+    @Query(value = "UPDATE notification_counter_entity SET unread_count = GREATEST(unread_count - :count, 0) " +
+            "WHERE user_id = :userId AND user_type = :userType",
+            nativeQuery = true)
+    int decrement(Long userId, String userType, long count);
+
+    // 校区所有学员的未读数加1（与公告通知在同一事务中）
+    @Modifying
+    @Query(value = "INSERT INTO notification_counter_entity (user_id, user_type, unread_count) " +
+            "SELECT s.id, 'STUDENT', 1 FROM student_entity s WHERE s.school_id = :schoolId " +
+            "ON DUPLICATE KEY UPDATE unread_count = unread_count + 1",
+            nativeQuery = true)
+    int incrementStudentsOfSchool(Long schoolId);
+
+    // 校区所有教练的未读数加1
+    @Modifying
+    @Query(value = "INSERT INTO notification_counter_entity (user_id, user_type, unread_count) " +
+            "SELECT c.id, 'COACH', 1 FROM coach_entity c WHERE c.school_id = :schoolId " +
+            "ON DUPLICATE KEY UPDATE unread_count = unread_count + 1",
+            nativeQuery = true)
+    int incrementCoachesOfSchool(Long schoolId);
+
+    // 按通知表重建所有用户的未读数（启用计数时执行一次）
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO notification_counter_entity (user_id, user_type, unread_count) " +
+            "SELECT user_id, user_type, COUNT(*) FROM notification_entity WHERE is_read = false " +
+            "GROUP BY user_id, user_type " +
+            "ON DUPLICATE KEY UPDATE unread_count = VALUES(unread_count)",
+            nativeQuery = true)
+    int rebuildAll();
+}
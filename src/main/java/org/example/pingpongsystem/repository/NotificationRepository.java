@@ -1,11 +1,15 @@
 package org.example.pingpongsystem.repository;
 
 import org.example.pingpongsystem.entity.NotificationEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -18,8 +22,69 @@ public interface NotificationRepository extends JpaRepository<NotificationEntity
     List<NotificationEntity> findByUserIdAndUserTypeAndType(
             Long userId, NotificationEntity.UserType userType, NotificationEntity.NotificationType type);
 
-    // 标记通知为已读
+    // 用户在指定ID之后的通知（推送断线重连时补发）
+    List<NotificationEntity> findByUserIdAndUserTypeAndIdGreaterThanOrderByIdAsc(
+            Long userId, NotificationEntity.UserType userType, Long id, Pageable pageable);
+
+    // 指定ID之后写入的所有通知（推送时按ID追踪新通知）
+    List<NotificationEntity> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    // ID区间内的通知（推送时复查追踪跳过的ID区间，按主键范围扫描）
+    List<NotificationEntity> findByIdBetweenOrderByIdAsc(Long fromId, Long toId);
+
+    @Query("SELECT MAX(n.id) FROM NotificationEntity n")
+    Long findMaxId();
+
+    // 通知类型列的数据类型（旧库由Hibernate建为enum，新库为varchar）
+    @Query(value = "SELECT DATA_TYPE FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() " +
+            "AND TABLE_NAME = 'notification_entity' AND COLUMN_NAME = 'type'",
+            nativeQuery = true)
+    String findTypeColumnDataType();
+
+    // 把通知类型列改为varchar，之后新增的通知类型（如ANNOUNCEMENT）才能写入
+    @Transactional
+    @Modifying
+    @Query(value = "ALTER TABLE notification_entity MODIFY type varchar(32) NOT NULL", nativeQuery = true)
+    void convertTypeColumnToVarchar();
+
+    // 用户在指定ID之前的通知（按ID倒序，历史通知翻页）
+    List<NotificationEntity> findByUserIdAndUserTypeAndIdLessThanOrderByIdDesc(
+            Long userId, NotificationEntity.UserType userType, Long id, Pageable pageable);
+
+    // 超过保留期的已读通知ID（走isRead+createTime索引）
+    @Query("SELECT n.id FROM NotificationEntity n WHERE n.isRead = true AND n.createTime < :before")
+    List<Long> findReadIdsBefore(LocalDateTime before, Pageable pageable);
+
+    // 按ID删除已读通知（未读通知不会被删除）
+    @Modifying
+    @Query("DELETE FROM NotificationEntity n WHERE n.id IN :ids AND n.isRead = true")
+    int deleteReadByIds(Collection<Long> ids);
+
+    // 给校区所有学员各写入一条公告通知（一条INSERT ... SELECT），返回写入条数
+    @Modifying
+    @Query(value = "INSERT INTO notification_entity (user_id, user_type, type, content, is_read, create_time) " +
+            "SELECT s.id, 'STUDENT', 'ANNOUNCEMENT', :content, false, :createTime FROM student_entity s " +
+            "WHERE s.school_id = :schoolId",
+            nativeQuery = true)
+    int insertStudentAnnouncements(Long schoolId, String content, LocalDateTime createTime);
+
+    // 给校区所有教练各写入一条公告通知
+    @Modifying
+    @Query(value = "INSERT INTO notification_entity (user_id, user_type, type, content, is_read, create_time) " +
+            "SELECT c.id, 'COACH', 'ANNOUNCEMENT', :content, false, :createTime FROM coach_entity c " +
+            "WHERE c.school_id = :schoolId",
+            nativeQuery = true)
+    int insertCoachAnnouncements(Long schoolId, String content, LocalDateTime createTime);
+
+    // 把用户的指定通知标记为已读，返回实际由未读变为已读的条数
+    @Modifying
+    @Query("UPDATE NotificationEntity n SET n.isRead = true " +
+            "WHERE n.userId = :userId AND n.userType = :userType AND n.id IN :ids AND n.isRead = false")
+    int markRead(Long userId, NotificationEntity.UserType userType, Collection<Long> ids);
+
+    // 把用户的全部未读通知标记为已读，返回标记的条数
     @Modifying
-    @Query("UPDATE NotificationEntity n SET n.isRead = true WHERE n.id = :notificationId")
-    void markAsRead(Long notificationId);
+    @Query("UPDATE NotificationEntity n SET n.isRead = true " +
+            "WHERE n.userId = :userId AND n.userType = :userType AND n.isRead = false")
+    int markAllRead(Long userId, NotificationEntity.UserType userType);
 }
\ No newline at end of file
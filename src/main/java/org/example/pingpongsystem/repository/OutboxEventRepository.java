@@ -0,0 +1,51 @@
+package org.example.pingpongsystem.repository;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.example.pingpongsystem.entity.OutboxEventEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEventEntity, Long> {
+
+    // 指定类型的到期待处理事件（按登记顺序）
+    @Query("SELECT e.id FROM OutboxEventEntity e WHERE e.status = :status AND e.eventType = :eventType " +
+            "AND e.nextAttemptAt <= :now ORDER BY e.id")
+    List<Long> findDueIds(OutboxEventEntity.Status status, OutboxEventEntity.EventType eventType,
+                          LocalDateTime now, Pageable pageable);
+
+    // 锁定单个事件（SELECT ... FOR UPDATE SKIP LOCKED），其他节点正在处理的事件直接跳过
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT e FROM OutboxEventEntity e WHERE e.id = :id")
+    Optional<OutboxEventEntity> lockById(Long id);
+
+    // 批量锁定事件，同样跳过其他节点已锁定的行
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    @Query("SELECT e FROM OutboxEventEntity e WHERE e.id IN :ids")
+    List<OutboxEventEntity> lockAllById(Collection<Long> ids);
+
+    // 批量标记为已执行
+    @Transactional
+    @Modifying
+    @Query("UPDATE OutboxEventEntity e SET e.status = org.example.pingpongsystem.entity.OutboxEventEntity.Status.DONE, " +
+            "e.processedTime = :now, e.lastError = null WHERE e.id IN :ids")
+    int markDone(Collection<Long> ids, LocalDateTime now);
+
+    long countByStatus(OutboxEventEntity.Status status);
+
+    // 最早的待处理事件登记时间（计算积压延迟）
+    @Query("SELECT MIN(e.createTime) FROM OutboxEventEntity e WHERE e.status = :status")
+    LocalDateTime findOldestCreateTime(OutboxEventEntity.Status status);
+}
@@ -5,7 +5,9 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface PaymentRecordRepository extends JpaRepository<PaymentRecordEntity, Long> {
@@ -14,4 +16,21 @@ public interface PaymentRecordRepository extends JpaRepository<PaymentRecordEnti
 
     // 按条件分页查询
     Page<PaymentRecordEntity> findAll(Specification<PaymentRecordEntity> spec, Pageable pageable);
+
+    // 游标分页（不统计总数）：按(createTime, id)倒序取游标之前的记录，条件为空时不过滤；schoolId按学员所属校区过滤
+    @Query("SELECT r FROM PaymentRecordEntity r WHERE (:studentId IS NULL OR r.studentId = :studentId) " +
+            "AND (:schoolId IS NULL OR r.studentId IN (SELECT s.id FROM StudentEntity s WHERE s.schoolId = :schoolId)) " +
+            "AND (:status IS NULL OR r.status = :status) AND (:method IS NULL OR r.paymentMethod = :method) " +
+            "AND (r.createTime < :cursorTime OR (r.createTime = :cursorTime AND r.id < :cursorId)) " +
+            "ORDER BY r.createTime DESC, r.id DESC")
+    List<PaymentRecordEntity> findSlice(Long schoolId, Long studentId, PaymentRecordEntity.PaymentStatus status,
+                                        PaymentRecordEntity.PaymentMethod method,
+                                        LocalDateTime cursorTime, Long cursorId, Pageable pageable);
+
+    // 与findSlice相同条件的总数（后台异步统计）
+    @Query("SELECT COUNT(r) FROM PaymentRecordEntity r WHERE (:studentId IS NULL OR r.studentId = :studentId) " +
+            "AND (:schoolId IS NULL OR r.studentId IN (SELECT s.id FROM StudentEntity s WHERE s.schoolId = :schoolId)) " +
+            "AND (:status IS NULL OR r.status = :status) AND (:method IS NULL OR r.paymentMethod = :method)")
+    long countFiltered(Long schoolId, Long studentId, PaymentRecordEntity.PaymentStatus status,
+                       PaymentRecordEntity.PaymentMethod method);
 }
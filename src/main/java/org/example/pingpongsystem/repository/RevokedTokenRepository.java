@@ -0,0 +1,36 @@
+package org.example.pingpongsystem.repository;
+
+import org.example.pingpongsystem.entity.RevokedTokenEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface RevokedTokenRepository extends JpaRepository<RevokedTokenEntity, Long> {
+
+    // 登记登出的token（重复登出时忽略）
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO revoked_token_entity (jti, expire_time, create_time) " +
+            "VALUES (:jti, :expireTime, :createTime)",
+            nativeQuery = true)
+    int insertIgnore(String jti, LocalDateTime expireTime, LocalDateTime createTime);
+
+    // 尚未过期的登出记录（jti, expireTime），启动时加载
+    @Query("SELECT r.jti, r.expireTime FROM RevokedTokenEntity r WHERE r.expireTime > :now")
+    List<Object[]> findActive(LocalDateTime now);
+
+    // since之后登记的登出记录（jti, expireTime），定时增量同步
+    @Query("SELECT r.jti, r.expireTime FROM RevokedTokenEntity r WHERE r.createTime >= :since AND r.expireTime > :now")
+    List<Object[]> findActiveSince(LocalDateTime since, LocalDateTime now);
+
+    // 删除已自然过期的登出记录
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RevokedTokenEntity r WHERE r.expireTime < :now")
+    int deleteExpired(LocalDateTime now);
+}
@@ -1,11 +1,36 @@
 package org.example.pingpongsystem.repository;
 
-import org.example.pingpongsystem.entity.PaymentRecordEntity;
 import org.example.pingpongsystem.entity.StudentAccountEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
 public interface StudentAccountRepository extends JpaRepository<StudentAccountEntity, Long> {
     Optional<StudentAccountEntity> findByStudentId(Long studentId);
-}
\ No newline at end of file
+
+    // 条件扣款：余额充足时才扣减，返回影响行数（0表示余额不足或账户不存在）
+    // 先用旧的balanceCents算出balance：MySQL按从左到右的顺序赋值，后面的赋值会读到更新后的值
+    @Transactional
+    @Modifying
+    @Query("UPDATE StudentAccountEntity a SET a.balance = (a.balanceCents - :cents) / 100.0, " +
+            "a.balanceCents = a.balanceCents - :cents, a.version = a.version + 1 " +
+            "WHERE a.studentId = :studentId AND a.balanceCents >= :cents")
+    int debit(Long studentId, long cents);
+
+    // 入账（充值、退款），返回影响行数（0表示账户不存在）
+    @Transactional
+    @Modifying
+    @Query("UPDATE StudentAccountEntity a SET a.balance = (a.balanceCents + :cents) / 100.0, " +
+            "a.balanceCents = a.balanceCents + :cents, a.version = a.version + 1 " +
+            "WHERE a.studentId = :studentId")
+    int credit(Long studentId, long cents);
+
+    // 旧数据只有balance，按balance补齐balanceCents
+    @Transactional
+    @Modifying
+    @Query("UPDATE StudentAccountEntity a SET a.balanceCents = ROUND(a.balance * 100, 0) WHERE a.balanceCents IS NULL")
+    int backfillBalanceCents();
+}
@@ -1,10 +1,34 @@
 package org.example.pingpongsystem.repository;
 
+import jakarta.persistence.LockModeType;
+import org.example.pingpongsystem.entity.CourseAppointmentEntity;
 import org.example.pingpongsystem.entity.TableEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface TableRepository extends JpaRepository<TableEntity, Long> {
     List<TableEntity> findAllBySchoolId(Long schoolId);
+
+    // 校区内指定时间段没有有效预约的球台（按ID从小到大），以数据库为准确认占用索引的"无空闲"结果
+    @Query("SELECT t.id FROM TableEntity t WHERE t.schoolId = :schoolId AND NOT EXISTS (" +
+            "SELECT a.id FROM CourseAppointmentEntity a WHERE a.tableId = t.id AND a.status IN :statuses " +
+            "AND a.startTime < :endTime AND a.endTime > :startTime) ORDER BY t.id")
+    List<Long> findFreeTableIds(Long schoolId, Collection<CourseAppointmentEntity.AppointmentStatus> statuses,
+                                LocalDateTime startTime, LocalDateTime endTime);
+
+    // 预约时锁定球台行（SELECT ... FOR UPDATE），同一球台的预约事务跨节点串行
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM TableEntity t WHERE t.id = :id")
+    Optional<TableEntity> findByIdForUpdate(Long id);
+
+    // 批量锁定多张球台（按ID顺序加锁，避免死锁）
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM TableEntity t WHERE t.id IN :ids ORDER BY t.id")
+    List<TableEntity> findAllByIdForUpdate(Collection<Long> ids);
 }
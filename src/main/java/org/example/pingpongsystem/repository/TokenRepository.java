@@ -2,8 +2,13 @@ package org.example.pingpongsystem.repository;
 
 import org.example.pingpongsystem.entity.TableEntity;
 import org.example.pingpongsystem.entity.TokenEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface TokenRepository extends JpaRepository<TokenEntity, Long> {
@@ -11,4 +16,23 @@ public interface TokenRepository extends JpaRepository<TokenEntity, Long> {
     public TokenEntity findByToken(String token);
 
     void deleteByToken(String token);
+
+    // 滑动续期：只更新过期时间，不加载实体
+    @Transactional
+    @Modifying
+    @Query("UPDATE TokenEntity t SET t.expireTime = :expireTime, t.lastAccessTime = :accessTime WHERE t.id = :id")
+    int touch(Long id, LocalDateTime expireTime, LocalDateTime accessTime);
+
+    // 分批查询已过期token的ID（配合deleteAllByIdInBatch分批删除）
+    @Query("SELECT t.id FROM TokenEntity t WHERE t.expireTime < :now")
+    List<Long> findExpiredIds(LocalDateTime now, Pageable pageable);
+
+    // 分批查询旧版本遗留的无过期时间token
+    @Query("SELECT t.id FROM TokenEntity t WHERE t.expireTime IS NULL")
+    List<Long> findIdsWithoutExpireTime(Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE TokenEntity t SET t.expireTime = :expireTime WHERE t.id IN :ids")
+    int setExpireTime(List<Long> ids, LocalDateTime expireTime);
 }
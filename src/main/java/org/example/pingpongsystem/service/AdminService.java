@@ -2,6 +2,8 @@ package org.example.pingpongsystem.service;
 
 import jakarta.persistence.criteria.Predicate;
 import jakarta.validation.ConstraintViolationException;
+import org.example.pingpongsystem.dto.AuthPrincipal;
+import org.example.pingpongsystem.dto.PaymentRecordSliceDTO;
 import org.example.pingpongsystem.entity.*;
 import org.example.pingpongsystem.repository.*;
 import org.example.pingpongsystem.utility.FileUploadUtil;
@@ -28,6 +30,7 @@ import java.util.stream.Collectors;
 
 @Service
 public class AdminService {
+    private static final int MAX_ANNOUNCEMENT_LENGTH = 255; // 通知内容列长度
     private final SchoolRepository schoolRepository;
     private final TableRepository tableRepository;
     private final AdminRepository adminRepository;
@@ -35,8 +38,13 @@ public class AdminService {
     private final TokenService tokenService;
     private final StudentRepository studentRepository;
     private final CoachAccountService coachAccountService;
+    private final TableOccupancyIndex tableOccupancyIndex;
+    private final NotificationService notificationService;
+    private final PaymentService paymentService;
 
-    public AdminService(SchoolRepository schoolRepository, TableRepository tableRepository, AdminRepository adminRepository, CoachRepository coachRepository, TokenService tokenService,StudentRepository studentRepository, CoachAccountService coachAccountService) {
+    public AdminService(SchoolRepository schoolRepository, TableRepository tableRepository, AdminRepository adminRepository, CoachRepository coachRepository, TokenService tokenService,StudentRepository studentRepository, CoachAccountService coachAccountService,
+                        TableOccupancyIndex tableOccupancyIndex, NotificationService notificationService,
+                        PaymentService paymentService) {
         this.schoolRepository = schoolRepository;
         this.tableRepository = tableRepository;
         this.adminRepository = adminRepository;
@@ -44,6 +52,9 @@ public class AdminService {
         this.tokenService = tokenService;
         this.studentRepository = studentRepository;
         this.coachAccountService = coachAccountService;
+        this.tableOccupancyIndex = tableOccupancyIndex;
+        this.notificationService = notificationService;
+        this.paymentService = paymentService;
     }
 
     public Result<String> login(String username, String password) {
@@ -57,18 +68,12 @@ public class AdminService {
         return tokenService.createToken(false, true, false, false, temp.getId());
     }
 
-    public Result<List<CoachEntity>> getUncertifiedCoachesByAdminToken(String token) {
-        // 1. 通过token解析出当前管理员的ID
-        Result<InfoAns> infoResult = tokenService.getInfo(token);
-        if (!infoResult.isSuccess()) {
-            return Result.error(StatusCode.FAIL, "获取管理员信息失败：" + infoResult.getMessage());
-        }
-        InfoAns adminInfo = infoResult.getData();
-        // 验证当前用户是否为管理员（避免越权）
-        if (!"admin".equals(adminInfo.getRole()) && !"super_admin".equals(adminInfo.getRole())) {
+    public Result<List<CoachEntity>> getUncertifiedCoaches(AuthPrincipal principal) {
+        // 1. 当前管理员身份（拦截器已按token解析），验证是否为管理员（避免越权）
+        if (!principal.isAdmin()) {
             return Result.error(StatusCode.FAIL, "权限不足，非管理员用户");
         }
-        Long adminId = Long.valueOf(adminInfo.getUserId()); // 假设InfoAns中已包含userId字段（需确认实体定义）
+        Long adminId = principal.getUserId();
 
         // 2. 查询该管理员管理的所有校区（通过adminId关联）
         List<SchoolEntity> managedSchools = schoolRepository.findByAdminId(adminId);
@@ -165,6 +170,8 @@ public class AdminService {
                     tableEntity.setSchoolId(school.getId());
                     tableRepository.save(tableEntity);
                 }
+                // 球台已重建，占用索引需重新加载
+                tableOccupancyIndex.invalidateSchool(school.getId());
 
                 temp.setTable_num(school.getTable_num());
             }
@@ -187,6 +194,7 @@ public class AdminService {
             }
             admin.setAvatar(uploadResult.getData());
             adminRepository.save(admin);
+            tokenService.evictUserSessions("admin", adminId);
             return Result.success("头像上传成功");
         } catch (IOException e) {
             return Result.error(StatusCode.FAIL, "头像上传失败：" + e.getMessage());
@@ -241,6 +249,8 @@ public class AdminService {
 
             // 保存更新
             AdminEntity updated = adminRepository.save(admin);
+            // 资料已变更，清除该管理员的会话缓存
+            tokenService.evictUserSessions("admin", updated.getId());
             return Result.success(updated);
 
         } catch (OptimisticLockingFailureException e) {
@@ -252,17 +262,12 @@ public class AdminService {
     }
 
 
-    public Result<List<CoachEntity>> getCoachesBySchoolId(String token, Long schoolId) {
-        // 1. 通过token获取管理员信息
-        Result<InfoAns> infoResult = tokenService.getInfo(token);
-        if (!infoResult.isSuccess()) {
-            return Result.error(StatusCode.FAIL, "获取管理员信息失败：" + infoResult.getMessage());
-        }
-        InfoAns adminInfo = infoResult.getData();
-        if (!"admin".equals(adminInfo.getRole()) && !"super_admin".equals(adminInfo.getRole())) {
+    public Result<List<CoachEntity>> getCoachesBySchoolId(AuthPrincipal principal, Long schoolId) {
+        // 1. 验证管理员权限
+        if (!principal.isAdmin()) {
             return Result.error(StatusCode.FAIL, "权限不足，非管理员用户");
         }
-        Long adminId = Long.valueOf(adminInfo.getUserId());
+        Long adminId = principal.getUserId();
 
         // 2. 验证校区是否属于该管理员管辖
         Result<Boolean> checkResult = checkSchoolManagedByAdmin(adminId, schoolId);
@@ -278,17 +283,12 @@ public class AdminService {
     /**
      * 按校区ID获取学生列表（需验证校区是否属于当前管理员管辖）
      */
-    public Result<List<StudentEntity>> getStudentsBySchoolId(String token, Long schoolId) {
-        // 1. 通过token获取管理员信息
-        Result<InfoAns> infoResult = tokenService.getInfo(token);
-        if (!infoResult.isSuccess()) {
-            return Result.error(StatusCode.FAIL, "获取管理员信息失败：" + infoResult.getMessage());
-        }
-        InfoAns adminInfo = infoResult.getData();
-        if (!"admin".equals(adminInfo.getRole()) && !"super_admin".equals(adminInfo.getRole())) {
+    public Result<List<StudentEntity>> getStudentsBySchoolId(AuthPrincipal principal, Long schoolId) {
+        // 1. 验证管理员权限
+        if (!principal.isAdmin()) {
             return Result.error(StatusCode.FAIL, "权限不足，非管理员用户");
         }
-        Long adminId = Long.valueOf(adminInfo.getUserId());
+        Long adminId = principal.getUserId();
 
         // 2. 验证校区是否属于该管理员管辖
         Result<Boolean> checkResult = checkSchoolManagedByAdmin(adminId, schoolId);
@@ -301,6 +301,54 @@ public class AdminService {
         return Result.success(students);
     }
 
+    /**
+     * 向所辖校区的全体学员和教练发布公告（如球台维护通知），返回收到公告的人数
+     */
+    public Result<Integer> announceToSchool(AuthPrincipal principal, Long schoolId, String content) {
+        // 1. 验证管理员权限
+        if (!principal.isAdmin()) {
+            return Result.error(StatusCode.FAIL, "权限不足，非管理员用户");
+        }
+
+        // 2. 校验公告内容
+        if (content == null || content.isBlank()) {
+            return Result.error(StatusCode.FAIL, "公告内容不能为空");
+        }
+        if (content.length() > MAX_ANNOUNCEMENT_LENGTH) {
+            return Result.error(StatusCode.FAIL, "公告内容不能超过" + MAX_ANNOUNCEMENT_LENGTH + "字");
+        }
+
+        // 3. 验证校区是否属于该管理员管辖
+        Result<Boolean> checkResult = checkSchoolManagedByAdmin(principal.getUserId(), schoolId);
+        if (!checkResult.isSuccess()) {
+            return Result.error(checkResult.getCode(), checkResult.getMessage());
+        }
+
+        // 4. 批量写入公告通知
+        int recipients = notificationService.announceToSchool(schoolId, content);
+        return Result.success(recipients);
+    }
+
+    /**
+     * 所辖校区学员的交易记录（游标分页，不统计总数）
+     */
+    public Result<PaymentRecordSliceDTO> getSchoolPaymentRecords(AuthPrincipal principal, Long schoolId, Long studentId,
+                                                               String status, String method, String cursor, int size) {
+        // 1. 验证管理员权限
+        if (!principal.isAdmin()) {
+            return Result.error(StatusCode.FAIL, "权限不足，非管理员用户");
+        }
+
+        // 2. 验证校区是否属于该管理员管辖
+        Result<Boolean> checkResult = checkSchoolManagedByAdmin(principal.getUserId(), schoolId);
+        if (!checkResult.isSuccess()) {
+            return Result.error(checkResult.getCode(), checkResult.getMessage());
+        }
+
+        // 3. 只查询该校区学员的记录（指定学员不属于该校区时结果为空）
+        return paymentService.getPaymentRecordSlice(schoolId, studentId, status, method, cursor, size);
+    }
+
     /**
      * 校验校区是否由指定管理员管辖
      */
@@ -325,21 +373,16 @@ public class AdminService {
      * 新增参数：String name - 学生姓名（模糊筛选，可选）
      */
     public Result<Page<StudentEntity>> getStudentsBySchoolIdWithPage(
-            String token,
+            AuthPrincipal principal,
             Long schoolId,
             String name, // 新增：学生姓名筛选参数
             Integer pageNum,
             Integer pageSize) {
-        // 1. 原有逻辑：token验证+权限校验
-        Result<InfoAns> infoResult = tokenService.getInfo(token);
-        if (!infoResult.isSuccess()) {
-            return Result.error(StatusCode.FAIL, "令牌无效：" + infoResult.getMessage());
-        }
-        InfoAns adminInfo = infoResult.getData();
-        if (!"admin".equals(adminInfo.getRole()) && !"super_admin".equals(adminInfo.getRole())) {
+        // 1. 原有逻辑：权限校验
+        if (!principal.isAdmin()) {
             return Result.error(StatusCode.FAIL, "权限不足，非管理员");
         }
-        Long adminId = Long.valueOf(adminInfo.getUserId());
+        Long adminId = principal.getUserId();
 
         // 2. 原有逻辑：获取管理员所辖校区ID列表
         List<SchoolEntity> managedSchools = schoolRepository.findByAdminId(adminId);
@@ -393,22 +436,17 @@ public class AdminService {
      * 新增参数：String name - 教练姓名（模糊筛选）、Integer level - 教练等级（精确筛选）
      */
     public Result<Page<CoachEntity>> getCertifiedCoachesBySchoolIdWithPage(
-            String token,
+            AuthPrincipal principal,
             Long schoolId,
             String name, // 新增：教练姓名筛选
             Integer level, // 新增：教练等级筛选（10/100/1000）
             Integer pageNum,
             Integer pageSize) {
-        // 1. 原有逻辑：token验证+权限校验
-        Result<InfoAns> infoResult = tokenService.getInfo(token);
-        if (!infoResult.isSuccess()) {
-            return Result.error(StatusCode.FAIL, "令牌无效：" + infoResult.getMessage());
-        }
-        InfoAns adminInfo = infoResult.getData();
-        if (!"admin".equals(adminInfo.getRole()) && !"super_admin".equals(adminInfo.getRole())) {
+        // 1. 原有逻辑：权限校验
+        if (!principal.isAdmin()) {
             return Result.error(StatusCode.FAIL, "权限不足，非管理员");
         }
-        Long adminId = Long.valueOf(adminInfo.getUserId());
+        Long adminId = principal.getUserId();
 
         // 2. 原有逻辑：获取管理员所辖校区ID列表
         List<SchoolEntity> managedSchools = schoolRepository.findByAdminId(adminId);
@@ -463,17 +501,12 @@ public class AdminService {
     }
 
     @Transactional
-    public Result<CoachEntity> updateCertifiedCoach(String token, CoachEntity updatedCoach) {
+    public Result<CoachEntity> updateCertifiedCoach(AuthPrincipal principal, CoachEntity updatedCoach) {
         // 1. 验证管理员权限
-        Result<InfoAns> infoResult = tokenService.getInfo(token);
-        if (!infoResult.isSuccess()) {
-            return Result.error(StatusCode.FAIL, "令牌无效：" + infoResult.getMessage());
-        }
-        InfoAns adminInfo = infoResult.getData();
-        if (!"admin".equals(adminInfo.getRole()) && !"super_admin".equals(adminInfo.getRole())) {
+        if (!principal.isAdmin()) {
             return Result.error(StatusCode.FAIL, "权限不足，非管理员用户");
         }
-        Long adminId = Long.valueOf(adminInfo.getUserId());
+        Long adminId = principal.getUserId();
 
         // 2. 检查教练是否存在
         Long coachId = updatedCoach.getId();
@@ -520,6 +553,7 @@ public class AdminService {
         coach.setIsMale(updatedCoach.getIsMale());
         // 6. 保存更新
         CoachEntity savedCoach = coachRepository.save(coach);
+        tokenService.evictUserSessions("coach", savedCoach.getId());
         return Result.success(savedCoach);
     }
 
@@ -527,17 +561,12 @@ public class AdminService {
      * 更新学生信息（管理员权限）
      */
     @Transactional
-    public Result<StudentEntity> updateStudent(String token, StudentEntity updatedStudent) {
+    public Result<StudentEntity> updateStudent(AuthPrincipal principal, StudentEntity updatedStudent) {
         // 1. 验证管理员权限
-        Result<InfoAns> infoResult = tokenService.getInfo(token);
-        if (!infoResult.isSuccess()) {
-            return Result.error(StatusCode.FAIL, "令牌无效：" + infoResult.getMessage());
-        }
-        InfoAns adminInfo = infoResult.getData();
-        if (!"admin".equals(adminInfo.getRole()) && !"super_admin".equals(adminInfo.getRole())) {
+        if (!principal.isAdmin()) {
             return Result.error(StatusCode.FAIL, "权限不足，非管理员用户");
         }
-        Long adminId = Long.valueOf(adminInfo.getUserId());
+        Long adminId = principal.getUserId();
 
         // 2. 检查学生是否存在
         Long studentId = updatedStudent.getId();
@@ -584,6 +613,7 @@ public class AdminService {
 
         // 5. 保存更新
         StudentEntity savedStudent = studentRepository.save(student);
+        tokenService.evictUserSessions("student", savedStudent.getId());
         return Result.success(savedStudent);
     }
 }
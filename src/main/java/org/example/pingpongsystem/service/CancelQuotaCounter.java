@@ -0,0 +1,81 @@
+package org.example.pingpongsystem.service;
+
+import org.example.pingpongsystem.entity.CancelRecordEntity;
+import org.example.pingpongsystem.repository.CancelQuotaRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * 每月取消次数计数器：(发起人类型, 用户ID, 月份) -> 有效取消次数（待确认 + 已确认），保存在cancel_quota_entity
+ * 计数行在本月首次读取或占用时按取消记录建立（每个用户每月统计一次），之后随取消申请的创建和处理在同一事务中加减；
+ * 上限由条件UPDATE在数据库中保证，多个节点同时处理同一用户的取消申请也不会超出
+ */
+@Component
+public class CancelQuotaCounter {
+    public static final int MONTHLY_LIMIT = 3;
+
+    // 计入取消次数的取消记录状态
+    public static final List<CancelRecordEntity.CancelStatus> COUNTED_STATUSES = List.of(
+            CancelRecordEntity.CancelStatus.PENDING,
+            CancelRecordEntity.CancelStatus.APPROVED
+    );
+
+    private final CancelQuotaRepository cancelQuotaRepository;
+
+    public CancelQuotaCounter(CancelQuotaRepository cancelQuotaRepository) {
+        this.cancelQuotaRepository = cancelQuotaRepository;
+    }
+
+    // 本月已使用的取消次数：计数行已建立时只读一行，否则先建立计数行
+    @Transactional
+    public int used(String userType, Long userId) {
+        YearMonth month = YearMonth.now();
+        String quotaMonth = month.toString();
+        Integer used = cancelQuotaRepository.findUsed(userType, userId, quotaMonth);
+        if (used == null) {
+            createIfAbsent(userType, userId, month);
+            used = cancelQuotaRepository.findUsed(userType, userId, quotaMonth);
+        }
+        return used == null ? 0 : used;
+    }
+
+    /**
+     * 未达上限时占用一次本月取消次数，返回占用后的次数；已达上限返回-1
+     * 在调用方事务中执行，计数行加锁直到事务结束；事务回滚时占用一并撤销
+     */
+    @Transactional
+    public int tryAcquire(String userType, Long userId) {
+        YearMonth month = YearMonth.now();
+        String quotaMonth = month.toString();
+        // 1. 建立本月计数行（已存在则忽略）
+        createIfAbsent(userType, userId, month);
+        // 2. 条件累加：一条UPDATE完成上限检查和占用
+        if (cancelQuotaRepository.increment(userType, userId, quotaMonth, MONTHLY_LIMIT) == 0) {
+            return -1;
+        }
+        return cancelQuotaRepository.findUsed(userType, userId, quotaMonth);
+    }
+
+    // 取消申请被拒绝，不再计入次数：在调用方事务中归还申请所在月份的次数
+    @Transactional
+    public void release(CancelRecordEntity record) {
+        Long userId = "COACH".equals(record.getUserType()) ? record.getCoachId() : record.getStudentId();
+        cancelQuotaRepository.decrement(record.getUserType(), userId,
+                YearMonth.from(record.getCreateTime()).toString());
+    }
+
+    // 按发起人类型分别统计，各自走对应的索引
+    private void createIfAbsent(String userType, Long userId, YearMonth month) {
+        LocalDateTime monthStart = month.atDay(1).atStartOfDay();
+        LocalDateTime nextMonthStart = month.plusMonths(1).atDay(1).atStartOfDay();
+        if ("COACH".equals(userType)) {
+            cancelQuotaRepository.createCoachIfAbsent(userId, month.toString(), monthStart, nextMonthStart);
+        } else {
+            cancelQuotaRepository.createStudentIfAbsent(userId, month.toString(), monthStart, nextMonthStart);
+        }
+    }
+}
@@ -5,9 +5,11 @@ import lombok.RequiredArgsConstructor;
 import org.example.pingpongsystem.entity.CoachAccountEntity;
 import org.example.pingpongsystem.entity.CoachTransactionRecordEntity;
 import org.example.pingpongsystem.entity.CoachWithdrawApplicationEntity;
+import org.example.pingpongsystem.entity.LedgerEntryEntity;
 import org.example.pingpongsystem.repository.CoachAccountRepository;
 import org.example.pingpongsystem.repository.CoachTransactionRecordRepository;
 import org.example.pingpongsystem.repository.CoachWithdrawApplicationRepository;
+import org.example.pingpongsystem.utility.MoneyUtil;
 import org.example.pingpongsystem.utility.Result;
 import org.example.pingpongsystem.utility.StatusCode;
 import org.springframework.data.domain.Page;
@@ -22,6 +24,7 @@ public class CoachAccountService {
     private final CoachAccountRepository coachAccountRepository;
     private final CoachTransactionRecordRepository transactionRecordRepository;
     private final CoachWithdrawApplicationRepository withdrawApplicationRepository;
+    private final LedgerService ledgerService;
 
     /**
      * 为教练创建账户
@@ -46,12 +49,14 @@ public class CoachAccountService {
             return Result.error(StatusCode.FAIL, "金额必须大于0");
         }
 
-        CoachAccountEntity account = coachAccountRepository.findByCoachId(coachId)
-                .orElseThrow(() -> new RuntimeException("教练账户不存在"));
+        if (!coachAccountRepository.existsByCoachId(coachId)) {
+            throw new RuntimeException("教练账户不存在");
+        }
 
-        // 更新余额
-        account.setBalance(account.getBalance() + amount);
-        coachAccountRepository.save(account);
+        // 记入账本（只插入分录，不更新账户行，多笔收入互不冲突）
+        ledgerService.transfer(LedgerEntryEntity.EntryType.COURSE_INCOME, appointmentId,
+                LedgerEntryEntity.AccountType.ESCROW, LedgerService.PLATFORM_ACCOUNT_ID,
+                LedgerEntryEntity.AccountType.COACH, coachId, MoneyUtil.toCents(amount));
 
         // 记录交易
         CoachTransactionRecordEntity transaction = new CoachTransactionRecordEntity();
@@ -69,10 +74,11 @@ public class CoachAccountService {
      * 获取教练账户余额
      */
     public Result<Double> getBalance(Long coachId) {
-        CoachAccountEntity account = coachAccountRepository.findByCoachId(coachId)
-                .orElseThrow(() -> new RuntimeException("教练账户不存在"));
+        if (!coachAccountRepository.existsByCoachId(coachId)) {
+            throw new RuntimeException("教练账户不存在");
+        }
 
-        return Result.success(account.getBalance());
+        return Result.success(MoneyUtil.toYuan(ledgerService.balanceCents(LedgerEntryEntity.AccountType.COACH, coachId)));
     }
 
     /**
@@ -117,11 +123,11 @@ public class CoachAccountService {
             return Result.error(StatusCode.FAIL, "银行账户信息不完整");
         }
 
-        // 检查余额
-        CoachAccountEntity account = coachAccountRepository.findByCoachId(coachId)
+        // 锁定教练账户行（同一教练的提现串行），再按账本检查余额
+        coachAccountRepository.findByCoachIdForUpdate(coachId)
                 .orElseThrow(() -> new RuntimeException("教练账户不存在"));
 
-        if (account.getBalance() < amount) {
+        if (ledgerService.balanceCents(LedgerEntryEntity.AccountType.COACH, coachId) < MoneyUtil.toCents(amount)) {
             return Result.error(StatusCode.FAIL, "账户余额不足");
         }
 
@@ -157,12 +163,11 @@ public class CoachAccountService {
         application.setCompleteTime(LocalDateTime.now());
         CoachWithdrawApplicationEntity updatedApplication = withdrawApplicationRepository.save(application);
 
-        // 扣减账户余额
-        CoachAccountEntity account = coachAccountRepository.findByCoachId(application.getCoachId())
-                .orElseThrow(() -> new RuntimeException("教练账户不存在"));
-
-        account.setBalance(account.getBalance() - application.getAmount());
-        coachAccountRepository.save(account);
+        // 记入账本：从教练余额转出
+        ledgerService.transfer(LedgerEntryEntity.EntryType.WITHDRAW, application.getId(),
+                LedgerEntryEntity.AccountType.COACH, application.getCoachId(),
+                LedgerEntryEntity.AccountType.CASH, LedgerService.PLATFORM_ACCOUNT_ID,
+                MoneyUtil.toCents(application.getAmount()));
 
         // 记录交易
         CoachTransactionRecordEntity transaction = new CoachTransactionRecordEntity();
@@ -153,6 +153,8 @@ public class CoachService {
 
         // 保存更新（原代码漏了save操作，补充上）
         CoachEntity updated = coachRepository.save(temp);
+        // 资料已变更，清除该教练的会话缓存
+        tokenService.evictUserSessions("coach", updated.getId());
         return Result.success(updated);
 
     }
@@ -311,6 +313,7 @@ public class CoachService {
             }
             coach.setAvatar(uploadResult.getData());
             coachRepository.save(coach);
+            tokenService.evictUserSessions("coach", coachId);
             return Result.success("头像上传成功");
         } catch (IOException e) {
             return Result.error(StatusCode.FAIL, "头像上传失败：" + e.getMessage());
@@ -1,22 +1,31 @@
 package org.example.pingpongsystem.service;
 
 import lombok.RequiredArgsConstructor;
+import org.example.pingpongsystem.dto.AppointmentPageDTO;
 import org.example.pingpongsystem.entity.*;
 import org.example.pingpongsystem.repository.*;
 import org.example.pingpongsystem.utility.Result;
 import org.example.pingpongsystem.utility.StatusCode;
-import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 public class CourseAppointmentService {
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
 
     private final CourseAppointmentRepository appointmentRepository;
     private final CoachTeachStudentRepository relationRepository;
@@ -24,8 +33,13 @@ public class CourseAppointmentService {
     private final CancelRecordRepository cancelRecordRepository;
     private final PaymentService paymentService;
     private final CoachRepository coachRepository;
-    private final StudentAccountRepository studentAccountRepository;
     private final PaymentRecordRepository paymentRecordRepository;
+    private final TableOccupancyIndex tableOccupancyIndex;
+    private final TableReservationManager tableReservationManager;
+    private final TransactionTemplate transactionTemplate;
+    private final CancelQuotaCounter cancelQuotaCounter;
+    private final OutboxService outboxService;
+    private final CourseReminderScheduler courseReminderScheduler;
 
     public Result<List<CourseAppointmentEntity>> getCoachSchedule(Long coachId) {
         LocalDateTime now = LocalDateTime.now();
@@ -42,7 +56,10 @@ public class CourseAppointmentService {
         return Result.success(schedule);
     }
 
-    @Transactional
+    /**
+     * 预约课程：按球台加锁，并在锁内完成整个事务（锁定球台行、确认无冲突、扣款、创建预约）
+     * 球台被抢占时换下一张球台；乐观锁/行锁等并发冲突按随机退避自动重试
+     */
     public Result<CourseAppointmentEntity> bookCourse(
             Long coachId, Long studentId, LocalDateTime startTime,
             LocalDateTime endTime, Long tableId, boolean autoAssign) {
@@ -69,98 +86,123 @@ public class CourseAppointmentService {
             return Result.error(StatusCode.FAIL, "教练未分配校区");
         }
 
-        // 4. 分配球台（根据校区筛选）
-        Long finalTableId;
-        if (autoAssign) {
-            finalTableId = autoAssignTable(schoolId, startTime, endTime);
-        } else {
-            // 验证手动选择的球台是否属于该校区且可用
-            if (!isTableAvailableInSchool(tableId, schoolId, startTime, endTime)) {
-                return Result.error(StatusCode.FAIL, "所选球台不可用或不属于该教练所在校区");
-            }
-            finalTableId = tableId;
+        // 4. 根据教练等级计算费用
+        Double hourlyRate = hourlyRateOf(coach.getLevel());
+        if (hourlyRate == null) {
+            return Result.error(StatusCode.FAIL, "教练等级设置异常");
         }
+        double totalAmount = courseAmount(hourlyRate, startTime, endTime);
+
+        // 5. 选择球台并在球台锁内完成预约
+        Set<Long> triedTables = new HashSet<>();
+        for (int attempt = 1; ; attempt++) {
+            Long candidate;
+            if (autoAssign) {
+                candidate = tableOccupancyIndex.findFreeTable(schoolId, startTime, endTime, triedTables);
+                if (candidate == null) {
+                    return Result.error(StatusCode.FAIL, "无可用球台");
+                }
+            } else {
+                // 验证手动选择的球台是否属于该校区且可用
+                if (!tableOccupancyIndex.isTableFree(schoolId, tableId, startTime, endTime)) {
+                    return Result.error(StatusCode.FAIL, "所选球台不可用或不属于该教练所在校区");
+                }
+                candidate = tableId;
+            }
 
-        if (finalTableId == null) {
-            return Result.error(StatusCode.FAIL, "无可用球台");
+            try {
+                return tableReservationManager.reserve(candidate, () -> transactionTemplate.execute(status -> {
+                    Result<CourseAppointmentEntity> result =
+                            bookOnTable(coach, studentId, startTime, endTime, candidate, totalAmount);
+                    if (!result.isSuccess()) {
+                        status.setRollbackOnly();
+                    }
+                    return result;
+                }));
+            } catch (TableTakenException e) {
+                // 索引与数据库不一致（如其他节点刚预约了该球台），重新加载索引后换一张球台
+                tableOccupancyIndex.invalidateSchool(schoolId);
+                if (!autoAssign) {
+                    return Result.error(StatusCode.FAIL, "所选球台不可用或不属于该教练所在校区");
+                }
+                triedTables.add(candidate);
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= tableReservationManager.getMaxAttempts()) {
+                    System.err.println("预约并发冲突，重试" + attempt + "次仍失败：" + e.getMessage());
+                    return Result.error(StatusCode.FAIL, "操作过于频繁，请稍后重试");
+                }
+                if (!tableReservationManager.backoff(attempt)) {
+                    return Result.error(StatusCode.FAIL, "操作过于频繁，请稍后重试");
+                }
+            }
         }
+    }
 
-        // 5. 根据教练等级计算费用
-        int level = coach.getLevel();
-        double hourlyRate;
-
-        switch (level) {
-            case 10:  // 初级教练
-                hourlyRate = 80.0;
-                break;
-            case 100:  // 中级教练
-                hourlyRate = 150.0;
-                break;
-            case 1000:  // 高级教练
-                hourlyRate = 200.0;
-                break;
-            default:
-                return Result.error(StatusCode.FAIL, "教练等级设置异常");
+    // 在球台锁和事务内执行：锁定球台行，以数据库为准确认无冲突后扣款并创建预约
+    private Result<CourseAppointmentEntity> bookOnTable(CoachEntity coach, Long studentId, LocalDateTime startTime,
+                                                        LocalDateTime endTime, Long tableId, double totalAmount) {
+        // 1. 锁定球台行（跨节点串行），并校验球台属于教练所在校区
+        Optional<TableEntity> tableOpt = tableRepository.findByIdForUpdate(tableId);
+        if (tableOpt.isEmpty() || !tableOpt.get().getSchoolId().equals(coach.getSchoolId())) {
+            return Result.error(StatusCode.FAIL, "所选球台不可用或不属于该教练所在校区");
         }
-
-//        // 计算总费用（时长小时数 × 时薪）
-//        long hours = java.time.Duration.between(startTime, endTime).toHours();
-//        double totalAmount = hourlyRate * hours;
-        // 计算总时长（转换为带小数的小时数，支持非整时）
-// 1. 先获取两个时间之间的总分钟数
-        long totalMinutes = java.time.Duration.between(startTime, endTime).toMinutes();
-// 2. 转换为小时数（除以60.0保留小数）
-        double hours = totalMinutes / 60.0;
-
-// 计算总费用（精确到分，可选四舍五入保留两位小数）
-        double totalAmount = hourlyRate * hours;
-// 如需保留两位小数（避免浮点数精度问题），可使用BigDecimal处理
-        totalAmount = Math.round(totalAmount * 100) / 100.0;  // 四舍五入到分
-
-        // ---------------------- 新增：余额检查与扣款逻辑 ----------------------
-        // 6. 查询学生账户
-        Optional<StudentAccountEntity> accountOpt = studentAccountRepository.findByStudentId(studentId);
-        if (accountOpt.isEmpty()) {
-            return Result.error(StatusCode.FAIL, "学生账户不存在，请先开通账户");
+        if (!isTableFreeInDb(tableId, startTime, endTime)) {
+            throw new TableTakenException();
         }
-        StudentAccountEntity account = accountOpt.get();
-        // 7. 检查余额是否充足
-        if (account.getBalance() < totalAmount) {
-            return Result.error(StatusCode.FAIL,
-                    String.format("余额不足，当前余额: %.2f元，所需金额: %.2f元",
-                            account.getBalance(), totalAmount));
+        // 锁定教练行（球台之后加锁，与连续预约的加锁顺序一致），教练同一时段只能有一节课
+        coachRepository.findByIdForUpdate(coach.getId());
+        if (appointmentRepository.existsByCoachIdAndStatusInAndStartTimeLessThanAndEndTimeGreaterThan(
+                coach.getId(), TableOccupancyIndex.ACTIVE_STATUSES, endTime, startTime)) {
+            return Result.error(StatusCode.FAIL, "教练该时段已有课程");
         }
 
-        // 8. 创建支付记录（账户余额支付）- 金额为负数表示消费
-        PaymentRecordEntity savedRecord = paymentService.createCoursePaymentRecord(studentId, totalAmount);
-
-// 9. 扣减余额（使用乐观锁防止并发问题）
-        try {
-            account.setBalance(account.getBalance() - totalAmount);
-            studentAccountRepository.save(account); // 乐观锁会自动检查version
-        } catch (OptimisticLockingFailureException e) {
-            // 并发更新冲突时重试（可根据实际需求调整重试逻辑）
-            return Result.error(StatusCode.FAIL, "操作过于频繁，请稍后重试");
+        // 2. 条件扣款：余额充足时一条UPDATE完成扣减
+        String debitError = paymentService.debit(studentId, totalAmount);
+        if (debitError != null) {
+            return Result.error(StatusCode.FAIL, debitError);
         }
 
+        // 3. 创建支付记录（账户余额支付）- 金额为负数表示消费
+        PaymentRecordEntity savedRecord = paymentService.createCoursePaymentRecord(studentId, totalAmount);
 
-        // ---------------------- 原有预约创建逻辑调整 ----------------------
-        // 10. 创建预约记录（状态改为等待确认）
+        // 4. 创建预约记录（状态为等待确认）
         CourseAppointmentEntity appointment = new CourseAppointmentEntity();
-        appointment.setCoachId(coachId);
+        appointment.setCoachId(coach.getId());
         appointment.setStudentId(studentId);
         appointment.setStartTime(startTime);
         appointment.setEndTime(endTime);
-        appointment.setTableId(finalTableId);
+        appointment.setTableId(tableId);
         appointment.setStatus(CourseAppointmentEntity.AppointmentStatus.PENDING_CONFIRM); // 等待教练确认
         appointment.setAmount(totalAmount);
-        appointment.setSchoolId(schoolId);
+        appointment.setSchoolId(coach.getSchoolId());
         appointment.setPaymentRecordId(savedRecord.getId()); // 关联支付记录ID
 
         appointmentRepository.save(appointment);
+        tableOccupancyIndex.onBooked(appointment);
         return Result.success(appointment);
     }
 
+    // 教练等级对应的课时费（元/小时），等级异常返回null
+    static Double hourlyRateOf(int level) {
+        switch (level) {
+            case 10:  // 初级教练
+                return 80.0;
+            case 100:  // 中级教练
+                return 150.0;
+            case 1000:  // 高级教练
+                return 200.0;
+            default:
+                return null;
+        }
+    }
+
+    // 课程费用：按分钟折算小时数（支持非整时），四舍五入到分
+    static double courseAmount(double hourlyRate, LocalDateTime startTime, LocalDateTime endTime) {
+        long totalMinutes = java.time.Duration.between(startTime, endTime).toMinutes();
+        double hours = totalMinutes / 60.0;
+        return Math.round(hourlyRate * hours * 100) / 100.0;
+    }
+
     @Transactional
     public Result<String> handleCoachConfirmation(Long appointmentId, boolean accept) {
         Optional<CourseAppointmentEntity> appointmentOpt = appointmentRepository.findById(appointmentId);
@@ -172,19 +214,17 @@ public class CourseAppointmentService {
         if (accept) {
             appointment.setStatus(CourseAppointmentEntity.AppointmentStatus.CONFIRMED);
             appointmentRepository.save(appointment);
+            courseReminderScheduler.onStatusChanged(appointment);
             return Result.success("已确认预约");
         } else {
-            // 拒绝预约时，触发退款
+            // 拒绝预约时，登记退款事件（与状态变更一起提交，由后台任务退款）
             if (appointment.getPaymentRecordId() != null) {
-                // 调用PaymentService的退款方法
-                Result<String> refundResult = paymentService.refund(appointment.getPaymentRecordId());
-                if (!refundResult.isSuccess()) {
-                    return refundResult; // 退款失败时返回错误
-                }
+                outboxService.enqueue(OutboxEventEntity.EventType.REFUND, appointment.getPaymentRecordId());
             }
             appointment.setStatus(CourseAppointmentEntity.AppointmentStatus.REJECTED);
             appointmentRepository.save(appointment);
-            return Result.success("已拒绝预约，已自动退款");
+            tableOccupancyIndex.onReleased(appointment);
+            return Result.success("已拒绝预约，款项将自动退还");
         }
     }
 
@@ -202,26 +242,13 @@ public class CourseAppointmentService {
             return Result.error(StatusCode.FAIL, "需提前24小时取消预约");
         }
 
-        // 3. 验证本月取消次数（最多3次，只统计PENDING和APPROVED状态）
-        LocalDateTime monthStart = LocalDateTime.now().with(TemporalAdjusters.firstDayOfMonth());
-        LocalDateTime monthEnd = LocalDateTime.now().with(TemporalAdjusters.lastDayOfMonth());
-        List<CancelRecordEntity.CancelStatus> validStatuses = List.of(
-                CancelRecordEntity.CancelStatus.PENDING,
-                CancelRecordEntity.CancelStatus.APPROVED
-        );
-
-        long cancelCount = 0;
-        // 根据发起人类型统计取消次数
-        if ("STUDENT".equals(userType)) {
-            cancelCount = cancelRecordRepository.countByStudentIdAndUserTypeAndStatusInAndCreateTimeBetween(
-                    userId, userType, validStatuses, monthStart, monthEnd);
-        } else if ("COACH".equals(userType)) {
-            cancelCount = cancelRecordRepository.countByCoachIdAndUserTypeAndStatusInAndCreateTimeBetween(
-                    userId, userType, validStatuses, monthStart, monthEnd);
+        // 3. 占用本月取消次数（最多3次，只统计PENDING和APPROVED状态），并发申请时不会超出上限
+        if (!"STUDENT".equals(userType) && !"COACH".equals(userType)) {
+            return Result.error(StatusCode.FAIL, "无效的用户类型");
         }
-
-        if (cancelCount >= 3) {
-            return Result.error(StatusCode.FAIL, "本月取消次数已达上限（3次）");
+        int used = cancelQuotaCounter.tryAcquire(userType, userId);
+        if (used < 0) {
+            return Result.error(StatusCode.FAIL, "本月取消次数已达上限（" + CancelQuotaCounter.MONTHLY_LIMIT + "次）");
         }
 
         // 4. 创建取消申请（设置双方ID）
@@ -236,8 +263,9 @@ public class CourseAppointmentService {
 
         appointment.setStatus(CourseAppointmentEntity.AppointmentStatus.CANCEL_REQUESTED);
         appointmentRepository.save(appointment);
+        courseReminderScheduler.onStatusChanged(appointment);
 
-        return Result.success("取消申请已提交，剩余取消次数：" + (3 - cancelCount - 1));
+        return Result.success("取消申请已提交，剩余取消次数：" + (CancelQuotaCounter.MONTHLY_LIMIT - used));
     }
 
     @Transactional
@@ -262,101 +290,111 @@ public class CourseAppointmentService {
             // 2. 更新预约状态为“已取消”
             appointment.setStatus(CourseAppointmentEntity.AppointmentStatus.CANCELLED);
             appointmentRepository.save(appointment);
+            tableOccupancyIndex.onReleased(appointment);
+            courseReminderScheduler.onStatusChanged(appointment);
 
-            // 3. 核心：触发退款（若存在支付记录）
+            // 3. 核心：登记退款事件（若存在支付记录），与取消状态一起提交，由后台任务退款
             Long paymentRecordId = appointment.getPaymentRecordId();
             if (paymentRecordId != null) {
-                Result<String> refundResult = paymentService.refund(paymentRecordId);
-                if (!refundResult.isSuccess()) {
-                    // 退款失败时，事务会自动回滚（取消状态和预约状态不会保存）
-                    return Result.error(StatusCode.FAIL, "取消申请批准成功，但退款失败：" + refundResult.getMessage());
-                }
+                outboxService.enqueue(OutboxEventEntity.EventType.REFUND, paymentRecordId);
             } else {
                 // 理论上不会走到这里（预约时已生成支付记录），但做容错处理
                 return Result.error(StatusCode.FAIL, "取消成功，但未找到对应的支付记录，无法退款");
             }
 
-            return Result.success("已批准取消申请，款项已退还");
+            return Result.success("已批准取消申请，款项将自动退还");
         } else {
             // 拒绝取消：更新取消记录状态为已拒绝，预约状态恢复为原状态（如CONFIRMED）
             record.setStatus(CancelRecordEntity.CancelStatus.REJECTED);
             cancelRecordRepository.save(record);
+            cancelQuotaCounter.release(record); // 被拒绝的申请不计入取消次数
 
             // 恢复预约状态（根据原状态判断，若原状态是PENDING_CONFIRM则保持，若是CONFIRMED则恢复）
             if (appointment.getStatus() == CourseAppointmentEntity.AppointmentStatus.CANCEL_REQUESTED) {
                 appointment.setStatus(CourseAppointmentEntity.AppointmentStatus.CONFIRMED);
                 appointmentRepository.save(appointment);
+                courseReminderScheduler.onStatusChanged(appointment);
             }
 
             return Result.success("已拒绝取消申请");
         }
     }
 
-    // 自动分配球台（根据校区筛选并检查时间段冲突）
-    private Long autoAssignTable(Long schoolId, LocalDateTime startTime, LocalDateTime endTime) {
-        // 根据校区查询所有球台
-        List<TableEntity> tables = tableRepository.findAllBySchoolId(schoolId);
-
-        // 调试：打印当前校区的所有球台ID
-        System.out.println("---------- 调试：当前校区（schoolId=" + schoolId + "）的所有球台ID ----------");
-        for (TableEntity table : tables) {
-            System.out.println("球台ID：" + table.getId());
-        }
-        System.out.println("--------------------------------------------------");
-        // 查找指定时间段内未被占用的球台
-        for (TableEntity table : tables) {
-            List<CourseAppointmentEntity> conflicts = appointmentRepository
-                    .findByTableIdAndStartTimeLessThanAndEndTimeGreaterThan(
-                            table.getId(), endTime, startTime);
-            if (conflicts.isEmpty()) {
-                return table.getId();
-            }
-        }
-        return null;
+    // 数据库中球台在指定时间段是否没有占用中的预约（已取消/已拒绝/已完成不算冲突）
+    private boolean isTableFreeInDb(Long tableId, LocalDateTime startTime, LocalDateTime endTime) {
+        return !appointmentRepository.existsByTableIdAndStatusInAndStartTimeLessThanAndEndTimeGreaterThan(
+                tableId, TableOccupancyIndex.ACTIVE_STATUSES, endTime, startTime);
     }
 
-    // 验证球台是否属于该校区且在指定时间段可用
-    private boolean isTableAvailableInSchool(Long tableId, Long schoolId, LocalDateTime startTime, LocalDateTime endTime) {
-        Optional<TableEntity> tableOpt = tableRepository.findById(tableId);
-        if (tableOpt.isEmpty()) {
-            return false;
-        }
-
-        TableEntity table = tableOpt.get();
-        // 检查球台是否属于该校区
-        if (!table.getSchoolId().equals(schoolId)) {
-            return false;
-        }
-
-        // 检查球台在指定时间段是否有冲突预约
-        List<CourseAppointmentEntity> conflicts = appointmentRepository
-                .findByTableIdAndStartTimeLessThanAndEndTimeGreaterThan(
-                        tableId, endTime, startTime);
-        return conflicts.isEmpty();
-    }
-
-    public Result<List<CourseAppointmentEntity>> getStudentAppointments(Long studentId) {
+    /**
+     * 学员预约列表（游标分页）
+     * 不指定时间范围时只查今天及以后的课程；status为空时不按状态过滤
+     */
+    public Result<AppointmentPageDTO> getStudentAppointments(Long studentId, String status, LocalDateTime from,
+                                                             LocalDateTime to, String cursor, Integer size) {
         // 1. 校验参数
         if (studentId == null) {
             return Result.error(StatusCode.FAIL, "学生ID不能为空");
         }
-
-        // 2. 关联查询预约列表（含教练姓名）
-        List<CourseAppointmentEntity> appointmentList = appointmentRepository.findByStudentId(studentId);
-
-        // 3. 返回结果
-        return Result.success(appointmentList);
+        // 2. 按游标查询一页
+        return pageAppointments(false, studentId, status, from, to, cursor, size);
     }
 
-    public Result<List<CourseAppointmentEntity>> getCoachAppointments(Long coachId){
+    // 教练预约列表（游标分页），参数同学员预约列表
+    public Result<AppointmentPageDTO> getCoachAppointments(Long coachId, String status, LocalDateTime from,
+                                                           LocalDateTime to, String cursor, Integer size) {
         // 1. 校验参数
         if (coachId == null) {
-            return Result.error(StatusCode.FAIL, "学生ID不能为空");
+            return Result.error(StatusCode.FAIL, "教练ID不能为空");
         }
-        // 2. 关联查询预约列表（含教练姓名）
-        List<CourseAppointmentEntity> appointmentList = appointmentRepository.findByCoachId(coachId);
-        // 3. 返回结果
-        return Result.success(appointmentList);
+        // 2. 按游标查询一页
+        return pageAppointments(true, coachId, status, from, to, cursor, size);
+    }
+
+    private Result<AppointmentPageDTO> pageAppointments(boolean byCoach, Long userId, String status,
+                                                        LocalDateTime from, LocalDateTime to,
+                                                        String cursor, Integer size) {
+        int pageSize = size == null ? DEFAULT_PAGE_SIZE : size;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            return Result.error(StatusCode.FAIL, "每页数量需在1到" + MAX_PAGE_SIZE + "之间");
+        }
+        CourseAppointmentEntity.AppointmentStatus statusFilter = null;
+        if (status != null && !status.isEmpty()) {
+            try {
+                statusFilter = CourseAppointmentEntity.AppointmentStatus.valueOf(status);
+            } catch (IllegalArgumentException e) {
+                return Result.error(StatusCode.FAIL, "无效的预约状态");
+            }
+        }
+        if (from == null) {
+            from = to == null ? LocalDate.now().atStartOfDay() : LocalDateTime.of(2000, 1, 1, 0, 0);
+        }
+
+        // 游标为上一页最后一条的"开始时间_ID"；没有游标时从from开始
+        LocalDateTime cursorTime = from;
+        long cursorId = 0L;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                int separator = cursor.lastIndexOf('_');
+                cursorTime = LocalDateTime.parse(cursor.substring(0, separator));
+                cursorId = Long.parseLong(cursor.substring(separator + 1));
+            } catch (RuntimeException e) {
+                return Result.error(StatusCode.FAIL, "无效的分页游标");
+            }
+        }
+
+        // 多取一条判断是否还有下一页
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+        List<CourseAppointmentEntity> rows = byCoach
+                ? appointmentRepository.findCoachPage(userId, statusFilter, from, to, cursorTime, cursorId, limit)
+                : appointmentRepository.findStudentPage(userId, statusFilter, from, to, cursorTime, cursorId, limit);
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            CourseAppointmentEntity last = rows.get(pageSize - 1);
+            nextCursor = last.getStartTime() + "_" + last.getId();
+        }
+        return Result.success(new AppointmentPageDTO(new ArrayList<>(rows), nextCursor));
     }
 
     public Result<List<CancelRecordEntity>> getPendingCancelRecords(Long userId, String userType) {
@@ -379,25 +417,17 @@ public class CourseAppointmentService {
 
     // 获取本月剩余取消次数
     public Result<Integer> getRemainingCancelCount(Long userId, String userType) {
-        LocalDateTime monthStart = LocalDateTime.now().with(TemporalAdjusters.firstDayOfMonth());
-        LocalDateTime monthEnd = LocalDateTime.now().with(TemporalAdjusters.lastDayOfMonth());
-        List<CancelRecordEntity.CancelStatus> validStatuses = List.of(
-                CancelRecordEntity.CancelStatus.PENDING,
-                CancelRecordEntity.CancelStatus.APPROVED
-        );
-
-        long cancelCount = 0;
-        if ("STUDENT".equals(userType)) {
-            cancelCount = cancelRecordRepository.countByStudentIdAndUserTypeAndStatusInAndCreateTimeBetween(
-                    userId, userType, validStatuses, monthStart, monthEnd);
-        } else if ("COACH".equals(userType)) {
-            cancelCount = cancelRecordRepository.countByCoachIdAndUserTypeAndStatusInAndCreateTimeBetween(
-                    userId, userType, validStatuses, monthStart, monthEnd);
-        } else {
+        if (!"STUDENT".equals(userType) && !"COACH".equals(userType)) {
             return Result.error(StatusCode.FAIL, "无效的用户类型");
         }
-
-        int remaining = 3 - (int) cancelCount;
+        int remaining = CancelQuotaCounter.MONTHLY_LIMIT - cancelQuotaCounter.used(userType, userId);
         return Result.success(Math.max(remaining, 0)); // 确保不返回负数
     }
+
+    // 锁定球台后发现时间段已被占用（事务随之回滚）
+    private static class TableTakenException extends RuntimeException {
+        private TableTakenException() {
+            super("球台时间段已被占用");
+        }
+    }
 }
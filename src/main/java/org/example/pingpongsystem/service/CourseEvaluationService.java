@@ -1,72 +1,143 @@
 package org.example.pingpongsystem.service;
 
-import lombok.RequiredArgsConstructor;
 import org.example.pingpongsystem.entity.*;
 import org.example.pingpongsystem.repository.CourseAppointmentRepository;
 import org.example.pingpongsystem.repository.CourseEvaluationRepository;
-import org.example.pingpongsystem.repository.CoursePaymentRecordRepository;
-import org.example.pingpongsystem.repository.PaymentRecordRepository;
 import org.example.pingpongsystem.utility.Result;
 import org.example.pingpongsystem.utility.StatusCode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
-@RequiredArgsConstructor
 public class CourseEvaluationService {
+    private static final String COMPLETE_CRON = "0 */1 * * * ?"; // 每1分钟执行一次（测试用，可调整为每小时）
+    private static final String COMPLETE_JOB = "processCompletedCourses";
+    // 首次扫描的起点（早于任何课程）
+    private static final LocalDateTime SCAN_START = LocalDateTime.of(2000, 1, 1, 0, 0);
 
     private final CourseEvaluationRepository evaluationRepository;
     private final CourseAppointmentRepository appointmentRepository;
     private final NotificationService notificationService;
-    private final CoursePaymentRecordRepository coursePaymentRecordRepository;
-    private final CoachAccountService coachAccountService;
-    private final PaymentRecordRepository paymentRecordRepository;
+    private final OutboxService outboxService;
+    private final TableOccupancyIndex tableOccupancyIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final JobMonitor jobMonitor;
+    private final JobLeaseService jobLeaseService;
+    private final int chunkSize;
+    private final long lookbackHours;
+    private final int shardCount;
+
+    // 各分片的高水位：在此之前结束的已确认课程都已处理过（进程内保存，重启或分片换节点后从头扫描一次）
+    private final Map<Integer, LocalDateTime> highWaterMarks = new ConcurrentHashMap<>();
+
+    public CourseEvaluationService(CourseEvaluationRepository evaluationRepository,
+                                   CourseAppointmentRepository appointmentRepository,
+                                   NotificationService notificationService, OutboxService outboxService,
+                                   TableOccupancyIndex tableOccupancyIndex, TransactionTemplate transactionTemplate,
+                                   JobMonitor jobMonitor, JobLeaseService jobLeaseService,
+                                   @Value("${course.complete.chunk-size:200}") int chunkSize,
+                                   @Value("${course.complete.lookback-hours:24}") long lookbackHours,
+                                   @Value("${course.complete.shards:4}") int shardCount) {
+        this.evaluationRepository = evaluationRepository;
+        this.appointmentRepository = appointmentRepository;
+        this.notificationService = notificationService;
+        this.outboxService = outboxService;
+        this.tableOccupancyIndex = tableOccupancyIndex;
+        this.transactionTemplate = transactionTemplate;
+        this.jobMonitor = jobMonitor;
+        this.jobLeaseService = jobLeaseService;
+        this.chunkSize = chunkSize;
+        this.lookbackHours = lookbackHours;
+        this.shardCount = shardCount;
+    }
+
     /**
      * 定时任务：处理已结束课程
+     * 按(status, endTime)索引从高水位开始分批读取，每批在独立的短事务中处理；
+     * 高水位往前回看lookback小时，课程结束后才被确认的预约也能被处理
+     * 多节点部署时按预约ID分片，每个分片由持有其租约的节点处理
      */
-    @Scheduled(cron = "0 */1 * * * ?")  // 每1分钟执行一次（测试用，可调整为每小时）
-    @Transactional
+    @Scheduled(cron = COMPLETE_CRON)
     public void processCompletedCourses() {
+        jobMonitor.runCron(COMPLETE_JOB, COMPLETE_CRON, this::completeEndedCourses);
+    }
+
+    // 返回本次处理的课程数
+    private int completeEndedCourses() {
+        List<Integer> shards = jobLeaseService.acquireShards(COMPLETE_JOB, shardCount);
+        // 不再负责的分片清除高水位，之后重新分到本节点时从头扫描
+        highWaterMarks.keySet().retainAll(shards);
+        int total = 0;
+        for (int shard : shards) {
+            total += completeShard(shard);
+        }
+        if (total > 0) {
+            System.out.println("已处理" + total + "节已结束课程");
+        }
+        return total;
+    }
+
+    private int completeShard(int shard) {
         LocalDateTime now = LocalDateTime.now();
-        List<CourseAppointmentEntity> completedCourses = appointmentRepository.findAll().stream()
-                .filter(appointment -> appointment.getStatus() == CourseAppointmentEntity.AppointmentStatus.CONFIRMED
-                        && appointment.getEndTime().isBefore(now))
-                .toList();
+        LocalDateTime highWaterMark = highWaterMarks.get(shard);
+        LocalDateTime cursorTime = highWaterMark == null ? SCAN_START : highWaterMark.minusHours(lookbackHours);
+        long cursorId = 0L;
+        int total = 0;
+        while (true) {
+            // 租约已被其他节点接管时停止，不推进高水位
+            if (!jobLeaseService.holds(COMPLETE_JOB + "#" + shard)) {
+                highWaterMarks.remove(shard);
+                return total;
+            }
+            LocalDateTime chunkTime = cursorTime;
+            long chunkId = cursorId;
+            List<CourseAppointmentEntity> chunk = transactionTemplate.execute(
+                    status -> completeChunk(now, chunkTime, chunkId, shard));
+            if (chunk == null || chunk.isEmpty()) {
+                break;
+            }
+            total += chunk.size();
+            CourseAppointmentEntity last = chunk.get(chunk.size() - 1);
+            cursorTime = last.getEndTime();
+            cursorId = last.getId();
+            if (chunk.size() < chunkSize) {
+                break;
+            }
+        }
+        // 所有批次都已提交才推进高水位，中途失败时下次从原位置重新扫描
+        highWaterMarks.put(shard, now);
+        return total;
+    }
+
+    // 处理一批已结束课程：标记完成、登记课时费结算、发送评价通知
+    private List<CourseAppointmentEntity> completeChunk(LocalDateTime now, LocalDateTime cursorTime, long cursorId,
+                                                        int shard) {
+        List<CourseAppointmentEntity> completedCourses = appointmentRepository.findEndedChunk(
+                CourseAppointmentEntity.AppointmentStatus.CONFIRMED, now, cursorTime, cursorId,
+                shardCount, shard, PageRequest.of(0, chunkSize));
 
+        List<Long> settlementIds = new ArrayList<>();
         for (CourseAppointmentEntity course : completedCourses) {
             course.setStatus(CourseAppointmentEntity.AppointmentStatus.COMPLETED);
             appointmentRepository.save(course);
+            tableOccupancyIndex.onReleased(course);
 
-            // 检查是否已经给教练付过款
-            if (!coursePaymentRecordRepository.existsByAppointmentId(course.getId())) {
-                // 获取支付记录
-                Long paymentRecordId = course.getPaymentRecordId();
-                if (paymentRecordId != null) {
-                    PaymentRecordEntity paymentRecord = paymentRecordRepository.findById(paymentRecordId)
-                            .orElse(null);
-
-                    // 给教练付款并记录交易
-                    if (paymentRecord != null) {
-                        // 调用新的带交易记录的方法
-                        coachAccountService.addBalance(course.getCoachId(), paymentRecord.getAmount(), course.getId());
-
-                        // 记录付款信息，防止重复付款
-                        CoursePaymentRecordEntity paymentRecordEntity = new CoursePaymentRecordEntity();
-                        paymentRecordEntity.setAppointmentId(course.getId());
-                        paymentRecordEntity.setCoachId(course.getCoachId());
-                        paymentRecordEntity.setAmount(paymentRecord.getAmount());
-                        paymentRecordEntity.setPaymentRecordId(paymentRecordId);
-                        coursePaymentRecordRepository.save(paymentRecordEntity);
-                    }
-                }
+            // 有支付记录的课程需给教练结算课时费
+            if (course.getPaymentRecordId() != null) {
+                settlementIds.add(course.getId());
             }
 
-
             // 发送评价通知（使用新的通知方法）
             notificationService.createEvaluationNotification(
                     course.getStudentId(),
@@ -79,6 +150,10 @@ public class CourseEvaluationService {
                     course.getId()
             );
         }
+
+        // 本批完成的课程一次批量登记课时费结算事件，由后台任务按教练汇总结算
+        outboxService.enqueueAll(OutboxEventEntity.EventType.COACH_SETTLEMENT, settlementIds);
+        return completedCourses;
     }
 
     /**
@@ -199,37 +274,4 @@ public class CourseEvaluationService {
         evaluationRepository.delete(evaluation);
         return Result.success(true);
     }
-
-    /**
-     * 定时任务：发送课程提醒（上课前1小时）
-     */
-    @Scheduled(cron = "0 */10 * * * ?")  // 每10分钟检查一次
-    @Transactional
-    public void sendCourseReminders() {
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime reminderTime = now.plusHours(1); // 1小时后
-
-        // 查询1小时后将要开始的课程
-        List<CourseAppointmentEntity> upcomingCourses = appointmentRepository.findAll().stream()
-                .filter(appointment -> appointment.getStatus() == CourseAppointmentEntity.AppointmentStatus.CONFIRMED
-                        && appointment.getStartTime().isAfter(now)
-                        && appointment.getStartTime().isBefore(reminderTime.plusMinutes(5))) // 允许5分钟误差
-                .toList();
-
-        for (CourseAppointmentEntity course : upcomingCourses) {
-            // 发送给学员
-            notificationService.createCourseReminderNotification(
-                    course.getStudentId(),
-                    NotificationEntity.UserType.STUDENT,
-                    course.getId()
-            );
-
-            // 发送给教练
-            notificationService.createCourseReminderNotification(
-                    course.getCoachId(),
-                    NotificationEntity.UserType.COACH,
-                    course.getId()
-            );
-        }
-    }
 }
\ No newline at end of file
@@ -0,0 +1,215 @@
+package org.example.pingpongsystem.service;
+
+import jakarta.annotation.PreDestroy;
+import org.example.pingpongsystem.entity.CourseAppointmentEntity;
+import org.example.pingpongsystem.entity.NotificationEntity;
+import org.example.pingpongsystem.repository.CourseAppointmentRepository;
+import org.example.pingpongsystem.utility.TransactionHooks;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 课程提醒：把即将开始的已确认课程按提醒时间放入延迟队列，到点给学员和教练各发一条提醒
+ * 定时任务每次从当前时间起加载整个时间窗口内未提醒的课程（已在队列中的去重），确认、取消预约时同步更新队列；
+ * 处理确认的节点宕机后，其他节点下次加载时会接管该课程的提醒；
+ * 发送前用条件UPDATE写入已提醒时间，每节课只提醒一次，重启或多节点运行也不会重复发送
+ */
+@Component
+public class CourseReminderScheduler {
+    private final CourseAppointmentRepository appointmentRepository;
+    private final NotificationService notificationService;
+    private final TransactionTemplate transactionTemplate;
+    private final JobMonitor jobMonitor;
+    private final long leadMinutes;
+    private final long loadAheadMinutes;
+    private final long loadIntervalMillis;
+
+    private final DelayQueue<Reminder> queue = new DelayQueue<>();
+    // 预约ID -> 队列中的提醒，用于去重和取消
+    private final Map<Long, Reminder> scheduled = new ConcurrentHashMap<>();
+    // 最近一次加载的窗口终点：开始时间不晚于此的新确认课程由onStatusChanged直接加入队列
+    private volatile LocalDateTime loadedUntil;
+    private volatile Thread worker;
+
+    public CourseReminderScheduler(CourseAppointmentRepository appointmentRepository,
+                                   NotificationService notificationService, TransactionTemplate transactionTemplate,
+                                   JobMonitor jobMonitor,
+                                   @Value("${reminder.lead-minutes:60}") long leadMinutes,
+                                   @Value("${reminder.load-ahead-minutes:30}") long loadAheadMinutes,
+                                   @Value("${reminder.load-interval-ms:600000}") long loadIntervalMillis) {
+        this.appointmentRepository = appointmentRepository;
+        this.notificationService = notificationService;
+        this.transactionTemplate = transactionTemplate;
+        this.jobMonitor = jobMonitor;
+        this.leadMinutes = leadMinutes;
+        this.loadAheadMinutes = loadAheadMinutes;
+        this.loadIntervalMillis = loadIntervalMillis;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread thread = new Thread(this::runWorker, "course-reminder");
+        thread.setDaemon(true);
+        worker = thread;
+        thread.start();
+        loadUpcoming();
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread thread = worker;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * 定时加载时间窗口（提醒提前量 + 预加载时长）内已确认且未提醒的课程
+     */
+    @Scheduled(fixedDelayString = "${reminder.load-interval-ms:600000}", initialDelayString = "${reminder.load-interval-ms:600000}")
+    public void loadUpcoming() {
+        jobMonitor.runFixedDelay("loadUpcomingReminders", loadIntervalMillis, this::loadWindow);
+    }
+
+    // 返回本次查询到的待提醒课程数
+    private int loadWindow() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime previous = loadedUntil;
+        LocalDateTime to = now.plusMinutes(leadMinutes + loadAheadMinutes);
+        // 先推进窗口再查询：查询期间提交的确认会由onStatusChanged加入队列
+        loadedUntil = to;
+        try {
+            // 每次都从当前时间查起（而不是上次的窗口终点）：其他节点内存中尚未发送的提醒在这里重新加载，
+            // 已在本节点队列中的由scheduled去重，已发送的由reminderSentTime过滤
+            List<CourseAppointmentEntity> upcoming = appointmentRepository.findReminderCandidates(
+                    CourseAppointmentEntity.AppointmentStatus.CONFIRMED, now, to);
+            for (CourseAppointmentEntity appointment : upcoming) {
+                schedule(appointment.getId(), appointment.getStartTime());
+            }
+            return upcoming.size();
+        } catch (DataAccessException e) {
+            loadedUntil = previous;
+            System.err.println("加载待提醒课程失败：" + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * 预约状态变更后调用：事务提交后，已确认的课程加入队列，其他状态移出队列
+     */
+    public void onStatusChanged(CourseAppointmentEntity appointment) {
+        Long appointmentId = appointment.getId();
+        LocalDateTime startTime = appointment.getStartTime();
+        boolean confirmed = appointment.getStatus() == CourseAppointmentEntity.AppointmentStatus.CONFIRMED;
+        TransactionHooks.afterCommit(() -> {
+            if (!confirmed) {
+                cancel(appointmentId);
+                return;
+            }
+            LocalDateTime until = loadedUntil;
+            // 尚未进入加载窗口的课程由定时加载处理
+            if (until != null && !startTime.isAfter(until)) {
+                schedule(appointmentId, startTime);
+            }
+        });
+    }
+
+    private void schedule(Long appointmentId, LocalDateTime startTime) {
+        if (!startTime.isAfter(LocalDateTime.now())) {
+            return; // 已开始的课程不再提醒
+        }
+        Reminder reminder = new Reminder(appointmentId, startTime, toMillis(startTime.minusMinutes(leadMinutes)));
+        if (scheduled.putIfAbsent(appointmentId, reminder) == null) {
+            queue.put(reminder);
+        }
+    }
+
+    private void cancel(Long appointmentId) {
+        Reminder reminder = scheduled.remove(appointmentId);
+        if (reminder != null) {
+            queue.remove(reminder);
+        }
+    }
+
+    private void runWorker() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Reminder reminder;
+            try {
+                reminder = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            scheduled.remove(reminder.appointmentId(), reminder);
+            try {
+                send(reminder.appointmentId());
+            } catch (RuntimeException e) {
+                System.err.println("发送课程提醒失败（预约" + reminder.appointmentId() + "），1分钟后重试：" + e.getMessage());
+                retryLater(reminder);
+            }
+        }
+    }
+
+    // 条件UPDATE成功（仍为已确认且未提醒）才发送，通知在标记提交后写入
+    private void send(Long appointmentId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (appointmentRepository.markReminderSent(appointmentId,
+                    CourseAppointmentEntity.AppointmentStatus.CONFIRMED, LocalDateTime.now()) == 0) {
+                return;
+            }
+            CourseAppointmentEntity course = appointmentRepository.findById(appointmentId).orElseThrow();
+            // 发送给学员
+            notificationService.createCourseReminderNotification(
+                    course.getStudentId(),
+                    NotificationEntity.UserType.STUDENT,
+                    course.getId()
+            );
+            // 发送给教练
+            notificationService.createCourseReminderNotification(
+                    course.getCoachId(),
+                    NotificationEntity.UserType.COACH,
+                    course.getId()
+            );
+        });
+    }
+
+    private void retryLater(Reminder reminder) {
+        LocalDateTime retryAt = LocalDateTime.now().plusMinutes(1);
+        if (retryAt.isBefore(reminder.startTime())) {
+            Reminder retry = new Reminder(reminder.appointmentId(), reminder.startTime(), toMillis(retryAt));
+            if (scheduled.putIfAbsent(reminder.appointmentId(), retry) == null) {
+                queue.put(retry);
+            }
+        }
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    // 一条待发送的提醒：到fireAtMillis时发送
+    private record Reminder(Long appointmentId, LocalDateTime startTime, long fireAtMillis) implements Delayed {
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(fireAtMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(fireAtMillis, ((Reminder) other).fireAtMillis);
+        }
+    }
+}
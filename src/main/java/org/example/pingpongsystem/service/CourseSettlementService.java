@@ -0,0 +1,104 @@
+package org.example.pingpongsystem.service;
+
+import lombok.RequiredArgsConstructor;
+import org.example.pingpongsystem.entity.CoachTransactionRecordEntity;
+import org.example.pingpongsystem.entity.CourseAppointmentEntity;
+import org.example.pingpongsystem.entity.LedgerEntryEntity;
+import org.example.pingpongsystem.entity.PaymentRecordEntity;
+import org.example.pingpongsystem.repository.CoachAccountRepository;
+import org.example.pingpongsystem.repository.CourseAppointmentRepository;
+import org.example.pingpongsystem.repository.CoursePaymentRecordRepository;
+import org.example.pingpongsystem.repository.PaymentRecordRepository;
+import org.example.pingpongsystem.utility.MoneyUtil;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 教练课时费结算：一批已完成课程按教练汇总，每位教练记一笔账，
+ * 交易记录和结算记录用JDBC批量插入，支付记录一次查询加载
+ */
+@Service
+@RequiredArgsConstructor
+public class CourseSettlementService {
+    private static final String INSERT_TRANSACTION_SQL =
+            "INSERT INTO coach_transaction_record_entity (coach_id, amount, type, related_id, status, create_time) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_SETTLEMENT_SQL =
+            "INSERT INTO course_payment_record_entity (appointment_id, coach_id, amount, payment_record_id, payment_time) " +
+            "VALUES (?, ?, ?, ?, ?)";
+
+    private final CourseAppointmentRepository appointmentRepository;
+    private final PaymentRecordRepository paymentRecordRepository;
+    private final CoursePaymentRecordRepository coursePaymentRecordRepository;
+    private final CoachAccountRepository coachAccountRepository;
+    private final LedgerService ledgerService;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * 结算一批课程（在调用方事务中执行），已结算或无支付记录的课程跳过，返回本次结算的课程数
+     * 任一课程无法结算（教练账户不存在、金额异常等）时抛出异常，整批回滚
+     */
+    public int settle(Collection<Long> appointmentIds) {
+        // 1. 过滤已结算的课程
+        Set<Long> settled = new HashSet<>(coursePaymentRecordRepository.findSettledAppointmentIds(appointmentIds));
+        List<CourseAppointmentEntity> courses = appointmentRepository.findAllById(appointmentIds).stream()
+                .filter(course -> !settled.contains(course.getId()) && course.getPaymentRecordId() != null)
+                .toList();
+        if (courses.isEmpty()) {
+            return 0;
+        }
+
+        // 2. 一次查询加载支付记录
+        Map<Long, PaymentRecordEntity> payments = paymentRecordRepository.findAllById(
+                        courses.stream().map(CourseAppointmentEntity::getPaymentRecordId).toList()).stream()
+                .collect(Collectors.toMap(PaymentRecordEntity::getId, Function.identity()));
+
+        // 3. 计算每节课的教练收入（支付记录金额为负数，收入取其相反数）
+        List<Object[]> transactionRows = new ArrayList<>();
+        List<Object[]> settlementRows = new ArrayList<>();
+        Map<Long, Long> centsByCourse = new LinkedHashMap<>();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (CourseAppointmentEntity course : courses) {
+            PaymentRecordEntity payment = payments.get(course.getPaymentRecordId());
+            if (payment == null) {
+                throw new IllegalStateException("支付记录不存在：" + course.getPaymentRecordId());
+            }
+            double income = -payment.getAmount();
+            if (income <= 0) {
+                throw new IllegalStateException("课程" + course.getId() + "结算金额必须大于0");
+            }
+            centsByCourse.put(course.getId(), MoneyUtil.toCents(income));
+            transactionRows.add(new Object[]{course.getCoachId(), income,
+                    CoachTransactionRecordEntity.TransactionType.COURSE_INCOME.name(), course.getId(),
+                    CoachTransactionRecordEntity.TransactionStatus.SUCCESS.name(), now});
+            settlementRows.add(new Object[]{course.getId(), course.getCoachId(), income, payment.getId(), now});
+        }
+
+        // 4. 检查教练账户
+        Set<Long> coachIds = courses.stream().map(CourseAppointmentEntity::getCoachId).collect(Collectors.toSet());
+        Set<Long> existing = new HashSet<>(coachAccountRepository.findExistingCoachIds(coachIds));
+        for (Long coachId : coachIds) {
+            if (!existing.contains(coachId)) {
+                throw new IllegalStateException("教练账户不存在：" + coachId);
+            }
+        }
+
+        // 5. 每节课记一笔账，relatedId为预约ID，与交易记录、结算记录对应
+        for (CourseAppointmentEntity course : courses) {
+            ledgerService.transfer(LedgerEntryEntity.EntryType.COURSE_INCOME, course.getId(),
+                    LedgerEntryEntity.AccountType.ESCROW, LedgerService.PLATFORM_ACCOUNT_ID,
+                    LedgerEntryEntity.AccountType.COACH, course.getCoachId(), centsByCourse.get(course.getId()));
+        }
+
+        // 6. 批量写入交易记录和结算记录（结算记录的appointmentId唯一，并发重复结算会整批回滚）
+        jdbcTemplate.batchUpdate(INSERT_TRANSACTION_SQL, transactionRows);
+        jdbcTemplate.batchUpdate(INSERT_SETTLEMENT_SQL, settlementRows);
+        return courses.size();
+    }
+}
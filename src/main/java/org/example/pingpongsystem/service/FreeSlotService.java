@@ -0,0 +1,152 @@
+package org.example.pingpongsystem.service;
+
+import lombok.RequiredArgsConstructor;
+import org.example.pingpongsystem.dto.FreeSlotDTO;
+import org.example.pingpongsystem.entity.CoachEntity;
+import org.example.pingpongsystem.entity.CourseAppointmentEntity;
+import org.example.pingpongsystem.entity.ScheduleEntity;
+import org.example.pingpongsystem.entity.TableEntity;
+import org.example.pingpongsystem.repository.CoachRepository;
+import org.example.pingpongsystem.repository.CourseAppointmentRepository;
+import org.example.pingpongsystem.repository.ScheduleRepository;
+import org.example.pingpongsystem.repository.TableRepository;
+import org.example.pingpongsystem.utility.Result;
+import org.example.pingpongsystem.utility.StatusCode;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * 教练空闲时段查询：校区开放时间 ∩ 教练无课 ∩ 有空闲球台
+ * 一次请求固定5次批量查询，其余在内存中按15分钟粒度计算
+ */
+@Service
+@RequiredArgsConstructor
+public class FreeSlotService {
+    private static final int SLOT_MINUTES = 15;
+    private static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+    private static final int MAX_DAYS = 31;
+
+    private final CoachRepository coachRepository;
+    private final ScheduleRepository scheduleRepository;
+    private final TableRepository tableRepository;
+    private final CourseAppointmentRepository appointmentRepository;
+
+    /**
+     * 查询教练在[startDate, endDate]内可预约的时间段
+     * 每个时间段都附带一个全程空闲的球台；不同球台的时间段可能重叠
+     */
+    public Result<List<FreeSlotDTO>> findFreeSlots(Long coachId, LocalDate startDate, LocalDate endDate) {
+        // 1. 参数校验
+        if (endDate.isBefore(startDate)) {
+            return Result.error(StatusCode.FAIL, "结束日期不能早于开始日期");
+        }
+        int days = (int) Duration.between(startDate.atStartOfDay(), endDate.atStartOfDay()).toDays() + 1;
+        if (days > MAX_DAYS) {
+            return Result.error(StatusCode.FAIL, "查询范围不能超过" + MAX_DAYS + "天");
+        }
+        Optional<CoachEntity> coachOpt = coachRepository.findById(coachId);
+        if (coachOpt.isEmpty()) {
+            return Result.error(StatusCode.FAIL, "教练不存在");
+        }
+        Long schoolId = coachOpt.get().getSchoolId();
+        if (schoolId == null) {
+            return Result.error(StatusCode.FAIL, "教练未分配校区");
+        }
+
+        LocalDateTime rangeStart = startDate.atStartOfDay();
+        LocalDateTime rangeEnd = endDate.plusDays(1).atStartOfDay();
+        int slotCount = days * SLOTS_PER_DAY;
+
+        // 2. 校区开放时间（每周模板展开到每一天），并去掉已经过去的时段
+        BitSet available = new BitSet(slotCount);
+        List<ScheduleEntity> schedules = scheduleRepository.findBySchoolId(schoolId);
+        for (int day = 0; day < days; day++) {
+            int dayOfWeek = startDate.plusDays(day).getDayOfWeek().getValue();
+            for (ScheduleEntity schedule : schedules) {
+                if (schedule.getDayOfWeek() == dayOfWeek) {
+                    // 开放时间只取完整的时段
+                    int from = day * SLOTS_PER_DAY + ceilSlot(schedule.getStartTime().toSecondOfDay() / 60);
+                    int to = day * SLOTS_PER_DAY + schedule.getEndTime().toSecondOfDay() / 60 / SLOT_MINUTES;
+                    if (from < to) {
+                        available.set(from, to);
+                    }
+                }
+            }
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (now.isAfter(rangeStart)) {
+            available.clear(0, Math.min(slotCount, ceilSlot(minutesFrom(rangeStart, now))));
+        }
+
+        // 3. 去掉教练已有课程的时段
+        List<CourseAppointmentEntity> coachAppointments = appointmentRepository
+                .findByCoachIdAndStatusInAndStartTimeLessThanAndEndTimeGreaterThan(
+                        coachId, TableOccupancyIndex.ACTIVE_STATUSES, rangeEnd, rangeStart);
+        for (CourseAppointmentEntity appointment : coachAppointments) {
+            clearRange(available, rangeStart, slotCount, appointment);
+        }
+
+        // 4. 逐个球台与其占用情况求交集
+        Map<Long, BitSet> tableFree = new TreeMap<>();
+        for (TableEntity table : tableRepository.findAllBySchoolId(schoolId)) {
+            tableFree.put(table.getId(), (BitSet) available.clone());
+        }
+        List<CourseAppointmentEntity> schoolAppointments = appointmentRepository
+                .findBySchoolIdAndStatusInAndStartTimeLessThanAndEndTimeGreaterThan(
+                        schoolId, TableOccupancyIndex.ACTIVE_STATUSES, rangeEnd, rangeStart);
+        for (CourseAppointmentEntity appointment : schoolAppointments) {
+            BitSet free = tableFree.get(appointment.getTableId());
+            if (free != null) {
+                clearRange(free, rangeStart, slotCount, appointment);
+            }
+        }
+
+        // 5. 提取每个球台的连续空闲段，去掉被其他球台时段完全包含的部分
+        List<FreeSlotDTO> slots = new ArrayList<>();
+        for (Map.Entry<Long, BitSet> entry : tableFree.entrySet()) {
+            BitSet free = entry.getValue();
+            for (int from = free.nextSetBit(0); from >= 0; from = free.nextSetBit(to(free, from))) {
+                int to = to(free, from);
+                slots.add(new FreeSlotDTO(rangeStart.plusMinutes((long) from * SLOT_MINUTES),
+                        rangeStart.plusMinutes((long) to * SLOT_MINUTES), entry.getKey()));
+            }
+        }
+        slots.sort(Comparator.comparing(FreeSlotDTO::getStartTime)
+                .thenComparing(FreeSlotDTO::getEndTime, Comparator.reverseOrder()));
+        List<FreeSlotDTO> result = new ArrayList<>();
+        LocalDateTime coveredUntil = null;
+        for (FreeSlotDTO slot : slots) {
+            if (coveredUntil == null || slot.getEndTime().isAfter(coveredUntil)) {
+                result.add(slot);
+                coveredUntil = slot.getEndTime();
+            }
+        }
+        return Result.success(result);
+    }
+
+    // 连续空闲段的结束位置（不含）
+    private static int to(BitSet bits, int from) {
+        return bits.nextClearBit(from);
+    }
+
+    // 预约占用的时段（不足一个时段的部分按整段占用）
+    private static void clearRange(BitSet bits, LocalDateTime rangeStart, int slotCount, CourseAppointmentEntity appointment) {
+        int from = Math.max(0, (int) Math.floorDiv(minutesFrom(rangeStart, appointment.getStartTime()), SLOT_MINUTES));
+        int to = Math.min(slotCount, ceilSlot(minutesFrom(rangeStart, appointment.getEndTime())));
+        if (from < to) {
+            bits.clear(from, to);
+        }
+    }
+
+    private static long minutesFrom(LocalDateTime rangeStart, LocalDateTime time) {
+        return Duration.between(rangeStart, time).toMinutes();
+    }
+
+    private static int ceilSlot(long minutes) {
+        return (int) Math.max(0, Math.floorDiv(minutes + SLOT_MINUTES - 1, SLOT_MINUTES));
+    }
+}
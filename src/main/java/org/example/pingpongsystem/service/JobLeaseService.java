@@ -0,0 +1,165 @@
+package org.example.pingpongsystem.service;
+
+import jakarta.annotation.PreDestroy;
+import org.example.pingpongsystem.repository.JobLeaseRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 集群定时任务租约：多个实例共用一个数据库时，保证每个任务（或任务分片）同一时刻只在一个节点执行
+ * 单例任务执行前调用tryAcquire，持有租约的节点定时续期，宕机后租约过期由其他节点接管；
+ * 分片任务调用acquireShards，按在线节点数均分分片
+ */
+@Service
+public class JobLeaseService {
+    private static final String NODE_PREFIX = "node:";
+
+    private final JobLeaseRepository leaseRepository;
+    private final String clusterName;
+    private final String nodeId;
+    private final long ttlMillis;
+
+    // 本节点认为自己持有的租约（续期时与数据库同步）
+    private final Set<String> held = ConcurrentHashMap.newKeySet();
+
+    public JobLeaseService(JobLeaseRepository leaseRepository,
+                           @Value("${cluster.name:default}") String clusterName,
+                           @Value("${cluster.node-id:}") String nodeId,
+                           @Value("${cluster.lease.ttl-seconds:30}") long ttlSeconds) {
+        this(leaseRepository, clusterName, nodeId.isBlank() ? defaultNodeId() : nodeId, Duration.ofSeconds(ttlSeconds));
+    }
+
+    // 指定租约时长（测试中模拟多个节点，可用毫秒级租约）
+    JobLeaseService(JobLeaseRepository leaseRepository, String clusterName, String nodeId, Duration ttl) {
+        this.leaseRepository = leaseRepository;
+        this.clusterName = clusterName;
+        this.nodeId = nodeId;
+        this.ttlMillis = ttl.toMillis();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 获取（或续期）任务租约，成功返回true；其他节点持有且未过期时返回false
+     */
+    public boolean tryAcquire(String job) {
+        String name = leaseName(job);
+        try {
+            leaseRepository.createIfAbsent(name);
+            if (leaseRepository.acquire(name, nodeId, ttlMillis) == 1) {
+                held.add(name);
+                return true;
+            }
+        } catch (DataAccessException e) {
+            System.err.println("获取任务租约" + name + "失败：" + e.getMessage());
+        }
+        held.remove(name);
+        return false;
+    }
+
+    // 本节点当前是否仍持有任务租约（长任务分批执行时用于确认没有被接管）
+    public boolean holds(String job) {
+        return held.contains(leaseName(job));
+    }
+
+    /**
+     * 获取分片任务中本节点负责的分片：每个节点最多持有 ceil(分片数 / 在线节点数) 个分片，
+     * 从按节点排序得到的起始分片开始获取，超出配额的分片释放给其他节点
+     */
+    public List<Integer> acquireShards(String job, int shardCount) {
+        List<Integer> shards = new ArrayList<>();
+        // 1. 登记本节点在线，并取在线节点列表
+        if (!tryAcquire(NODE_PREFIX + nodeId)) {
+            return shards;
+        }
+        List<String> nodes = liveNodes();
+        int index = Math.max(nodes.indexOf(nodeId), 0);
+        int quota = (shardCount + nodes.size() - 1) / nodes.size();
+        int offset = index * shardCount / nodes.size();
+
+        // 2. 从起始分片开始依次获取，达到配额后释放多余的分片
+        for (int i = 0; i < shardCount; i++) {
+            int shard = (offset + i) % shardCount;
+            String shardJob = job + "#" + shard;
+            if (shards.size() >= quota) {
+                if (holds(shardJob)) {
+                    release(shardJob);
+                }
+            } else if (tryAcquire(shardJob)) {
+                shards.add(shard);
+            }
+        }
+        return shards;
+    }
+
+    public void release(String job) {
+        String name = leaseName(job);
+        held.remove(name);
+        try {
+            leaseRepository.release(name, nodeId);
+        } catch (DataAccessException e) {
+            System.err.println("释放任务租约" + name + "失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 心跳：续期本节点持有的所有租约，并以数据库为准同步持有列表（已过期被接管的租约不再认为持有）
+     */
+    @Scheduled(fixedDelayString = "${cluster.lease.heartbeat-ms:10000}")
+    public void heartbeat() {
+        try {
+            leaseRepository.renewAll(nodeId, ttlMillis);
+            held.retainAll(leaseRepository.findHeldJobNames(nodeId));
+        } catch (DataAccessException e) {
+            System.err.println("任务租约续期失败：" + e.getMessage());
+        }
+    }
+
+    // 正常停机时释放租约，其他节点不必等租约过期即可接管
+    @PreDestroy
+    public void releaseAll() {
+        for (String name : new ArrayList<>(held)) {
+            try {
+                leaseRepository.release(name, nodeId);
+            } catch (DataAccessException e) {
+                System.err.println("释放任务租约" + name + "失败：" + e.getMessage());
+            }
+        }
+        held.clear();
+    }
+
+    // 在线节点（节点租约未过期），按节点ID排序；本节点总在其中
+    private List<String> liveNodes() {
+        List<String> nodes = new ArrayList<>(leaseRepository.findLiveOwners(leaseName(NODE_PREFIX)));
+        if (!nodes.contains(nodeId)) {
+            nodes.add(nodeId);
+        }
+        return nodes;
+    }
+
+    private String leaseName(String job) {
+        return clusterName + ":" + job;
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
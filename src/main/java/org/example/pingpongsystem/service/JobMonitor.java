@@ -0,0 +1,108 @@
+package org.example.pingpongsystem.service;
+
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * 定时任务监控：同一任务上一次还没执行完时跳过本次，并记录每个任务的耗时、处理行数和相对计划时间的延迟
+ */
+@Component
+public class JobMonitor {
+    private final Map<String, JobStats> jobs = new ConcurrentHashMap<>();
+    private final Map<String, CronExpression> crons = new ConcurrentHashMap<>();
+    private final LocalDateTime startedAt = LocalDateTime.now();
+
+    /**
+     * 执行cron任务，body返回处理的行数；返回-1表示因上次未结束而跳过
+     */
+    public int runCron(String job, String cron, IntSupplier body) {
+        CronExpression expression = crons.computeIfAbsent(cron, CronExpression::parse);
+        // Spring按上次结束时间计算下一次cron触发时间
+        return run(job, expression::next, body);
+    }
+
+    /**
+     * 执行固定间隔任务（fixedDelay），body返回处理的行数；返回-1表示因上次未结束而跳过
+     */
+    public int runFixedDelay(String job, long delayMillis, IntSupplier body) {
+        return run(job, lastEnd -> lastEnd.plus(Duration.ofMillis(delayMillis)), body);
+    }
+
+    private int run(String job, UnaryOperator<LocalDateTime> nextAfter, IntSupplier body) {
+        JobStats stats = jobs.computeIfAbsent(job, k -> new JobStats());
+        if (!stats.running.compareAndSet(false, true)) {
+            stats.skipped.incrementAndGet();
+            System.err.println("定时任务" + job + "上次执行尚未结束，跳过本次");
+            return -1;
+        }
+        LocalDateTime start = LocalDateTime.now();
+        LocalDateTime planned = nextAfter.apply(stats.lastEnd == null ? startedAt : stats.lastEnd);
+        stats.lastLagMillis = planned == null ? 0 : Math.max(Duration.between(planned, start).toMillis(), 0);
+        stats.lastStart = start;
+        long begin = System.nanoTime();
+        try {
+            int rows = body.getAsInt();
+            stats.lastRows = rows;
+            stats.totalRows.addAndGet(rows);
+            return rows;
+        } catch (RuntimeException e) {
+            stats.failures.incrementAndGet();
+            stats.lastError = e.getMessage();
+            throw e;
+        } finally {
+            long millis = (System.nanoTime() - begin) / 1_000_000;
+            stats.lastDurationMillis = millis;
+            stats.maxDurationMillis = Math.max(stats.maxDurationMillis, millis);
+            stats.runs.incrementAndGet();
+            stats.lastEnd = LocalDateTime.now();
+            stats.running.set(false);
+        }
+    }
+
+    // 各任务统计（按任务名排序）
+    public Map<String, Map<String, Object>> stats() {
+        Map<String, Map<String, Object>> result = new TreeMap<>();
+        jobs.forEach((job, stats) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("running", stats.running.get());
+            item.put("runs", stats.runs.get());
+            item.put("skipped", stats.skipped.get());
+            item.put("failures", stats.failures.get());
+            item.put("lastStart", stats.lastStart);
+            item.put("lastDurationMillis", stats.lastDurationMillis);
+            item.put("maxDurationMillis", stats.maxDurationMillis);
+            item.put("lastLagMillis", stats.lastLagMillis);
+            item.put("lastRows", stats.lastRows);
+            item.put("totalRows", stats.totalRows.get());
+            item.put("lastError", stats.lastError);
+            result.put(job, item);
+        });
+        return result;
+    }
+
+    private static class JobStats {
+        final AtomicBoolean running = new AtomicBoolean();
+        final AtomicLong runs = new AtomicLong();
+        final AtomicLong skipped = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong totalRows = new AtomicLong();
+        volatile LocalDateTime lastStart;
+        volatile LocalDateTime lastEnd;
+        volatile long lastDurationMillis;
+        volatile long maxDurationMillis;
+        volatile long lastLagMillis;
+        volatile int lastRows;
+        volatile String lastError;
+    }
+}
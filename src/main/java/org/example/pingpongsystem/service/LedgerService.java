@@ -0,0 +1,193 @@
+package org.example.pingpongsystem.service;
+
+import org.example.pingpongsystem.entity.CoachAccountEntity;
+import org.example.pingpongsystem.entity.LedgerEntryEntity;
+import org.example.pingpongsystem.entity.LedgerEntryEntity.AccountType;
+import org.example.pingpongsystem.entity.LedgerEntryEntity.EntryType;
+import org.example.pingpongsystem.entity.LedgerSnapshotEntity;
+import org.example.pingpongsystem.entity.StudentAccountEntity;
+import org.example.pingpongsystem.repository.CoachAccountRepository;
+import org.example.pingpongsystem.repository.LedgerEntryRepository;
+import org.example.pingpongsystem.repository.LedgerSnapshotRepository;
+import org.example.pingpongsystem.repository.StudentAccountRepository;
+import org.example.pingpongsystem.utility.MoneyUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * 复式记账账本：所有资金变动以分录形式只插入不修改，每笔业务的分录合计为0
+ * 余额读取为"快照 + 快照之后的少量分录"，快照由定时任务按分录ID增量推进
+ */
+@Service
+public class LedgerService {
+    public static final long PLATFORM_ACCOUNT_ID = 0L;
+
+    private final LedgerEntryRepository entryRepository;
+    private final LedgerSnapshotRepository snapshotRepository;
+    private final StudentAccountRepository studentAccountRepository;
+    private final CoachAccountRepository coachAccountRepository;
+    private final JobLeaseService jobLeaseService;
+    private final long snapshotLagSeconds;
+
+    public LedgerService(LedgerEntryRepository entryRepository, LedgerSnapshotRepository snapshotRepository,
+                         StudentAccountRepository studentAccountRepository, CoachAccountRepository coachAccountRepository,
+                         JobLeaseService jobLeaseService,
+                         @Value("${ledger.snapshot.lag-seconds:60}") long snapshotLagSeconds) {
+        this.entryRepository = entryRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.studentAccountRepository = studentAccountRepository;
+        this.coachAccountRepository = coachAccountRepository;
+        this.jobLeaseService = jobLeaseService;
+        this.snapshotLagSeconds = snapshotLagSeconds;
+    }
+
+    /**
+     * 记一笔账：legs的金额合计必须为0，在调用方事务内插入
+     */
+    public void post(EntryType entryType, Long relatedId, Leg... legs) {
+        long total = 0;
+        for (Leg leg : legs) {
+            total += leg.amountCents();
+        }
+        if (total != 0) {
+            throw new IllegalArgumentException("分录借贷不平：" + entryType + "，差额" + total + "分");
+        }
+        String journalId = UUID.randomUUID().toString();
+        LocalDateTime now = LocalDateTime.now();
+        List<LedgerEntryEntity> entries = new ArrayList<>();
+        for (Leg leg : legs) {
+            LedgerEntryEntity entry = new LedgerEntryEntity();
+            entry.setJournalId(journalId);
+            entry.setAccountType(leg.accountType());
+            entry.setAccountId(leg.accountId());
+            entry.setAmountCents(leg.amountCents());
+            entry.setEntryType(entryType);
+            entry.setRelatedId(relatedId);
+            entry.setCreateTime(now);
+            entries.add(entry);
+        }
+        entryRepository.saveAll(entries);
+    }
+
+    // 资金从from账户转到to账户
+    public void transfer(EntryType entryType, Long relatedId, AccountType fromType, Long fromId,
+                         AccountType toType, Long toId, long amountCents) {
+        post(entryType, relatedId, new Leg(fromType, fromId, -amountCents), new Leg(toType, toId, amountCents));
+    }
+
+    // 账户余额（分）：快照余额 + 快照之后的分录
+    public long balanceCents(AccountType accountType, Long accountId) {
+        Optional<LedgerSnapshotEntity> snapshot = snapshotRepository.findByAccountTypeAndAccountId(accountType, accountId);
+        long base = snapshot.map(LedgerSnapshotEntity::getBalanceCents).orElse(0L);
+        long afterId = snapshot.map(LedgerSnapshotEntity::getLastEntryId).orElse(0L);
+        return base + entryRepository.sumAfter(accountType, accountId, afterId);
+    }
+
+    /**
+     * 启用账本时把现有账户余额记为期初余额（只执行一次，需在开始处理请求之前调用）
+     */
+    @Transactional
+    public void postOpeningBalances() {
+        if (entryRepository.count() > 0) {
+            return;
+        }
+        int opened = 0;
+        for (StudentAccountEntity account : studentAccountRepository.findAll()) {
+            if (account.getBalanceCents() != null && account.getBalanceCents() != 0) {
+                transfer(EntryType.OPENING, null, AccountType.CASH, PLATFORM_ACCOUNT_ID,
+                        AccountType.STUDENT, account.getStudentId(), account.getBalanceCents());
+                opened++;
+            }
+        }
+        for (CoachAccountEntity account : coachAccountRepository.findAll()) {
+            long cents = MoneyUtil.toCents(account.getBalance());
+            if (cents != 0) {
+                transfer(EntryType.OPENING, null, AccountType.CASH, PLATFORM_ACCOUNT_ID,
+                        AccountType.COACH, account.getCoachId(), cents);
+                opened++;
+            }
+        }
+        if (opened > 0) {
+            System.out.println("账本已记录" + opened + "个账户的期初余额");
+        }
+    }
+
+    /**
+     * 定时推进余额快照：把上次快照之后的分录按账户汇总后加到快照上
+     * 只处理lag之前写入的分录，避免自增ID较小但尚未提交的分录被跳过
+     * 多节点部署时只由持有租约的节点推进，避免同一批分录被重复累加
+     */
+    @Scheduled(fixedDelayString = "${ledger.snapshot.interval-ms:300000}")
+    @Transactional
+    public void refreshSnapshots() {
+        if (!jobLeaseService.tryAcquire("refreshLedgerSnapshots")) {
+            return;
+        }
+        long fromId = snapshotRepository.findLastEntryId();
+        Long toId = entryRepository.findMaxIdBefore(LocalDateTime.now().minusSeconds(snapshotLagSeconds));
+        if (toId == null || toId <= fromId) {
+            return;
+        }
+        List<Object[]> deltas = entryRepository.sumByAccountBetween(fromId, toId);
+        LocalDateTime now = LocalDateTime.now();
+        for (Object[] row : deltas) {
+            AccountType accountType = (AccountType) row[0];
+            Long accountId = (Long) row[1];
+            long delta = ((Number) row[2]).longValue();
+            LedgerSnapshotEntity snapshot = snapshotRepository.findByAccountTypeAndAccountId(accountType, accountId)
+                    .orElseGet(() -> {
+                        LedgerSnapshotEntity created = new LedgerSnapshotEntity();
+                        created.setAccountType(accountType);
+                        created.setAccountId(accountId);
+                        created.setBalanceCents(0L);
+                        return created;
+                    });
+            snapshot.setBalanceCents(snapshot.getBalanceCents() + delta);
+            snapshot.setLastEntryId(toId);
+            snapshot.setSnapshotTime(now);
+            snapshotRepository.save(snapshot);
+        }
+        System.out.println("账本快照已推进到分录" + toId + "，更新" + deltas.size() + "个账户");
+    }
+
+    /**
+     * 月度对账：流式汇总当月各类账户的净变动，并检查每笔业务借贷平衡
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> reconcile(YearMonth month) {
+        LocalDateTime from = month.atDay(1).atStartOfDay();
+        LocalDateTime to = month.plusMonths(1).atDay(1).atStartOfDay();
+
+        Map<AccountType, Long> netByType = new EnumMap<>(AccountType.class);
+        long entries = 0;
+        try (Stream<Object[]> rows = entryRepository.streamAmounts(from, to)) {
+            Iterator<Object[]> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                Object[] row = iterator.next();
+                netByType.merge((AccountType) row[0], ((Number) row[1]).longValue(), Long::sum);
+                entries++;
+            }
+        }
+        long net = netByType.values().stream().mapToLong(Long::longValue).sum();
+        List<String> unbalanced = entryRepository.findUnbalancedJournals(from, to);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("month", month.toString());
+        report.put("entries", entries);
+        netByType.forEach((type, cents) -> report.put(type.name(), MoneyUtil.toYuan(cents)));
+        report.put("balanced", net == 0 && unbalanced.isEmpty());
+        report.put("unbalancedJournals", unbalanced);
+        return report;
+    }
+
+    // 一条分录：账户及金额（分）
+    public record Leg(AccountType accountType, Long accountId, long amountCents) {
+    }
+}
@@ -20,20 +20,27 @@ import java.util.stream.Collectors;
 @Service
 @RequiredArgsConstructor
 public class MonthlyMatchService {
+    private static final String ARRANGE_CRON = "0 */1 * * * ?"; // 每1分钟执行一次（测试用，可调整为每小时）
+    private static final String SWITCH_STATUS_CRON = "0 */1 * * * ?";
 
     private final MonthlyMatchRepository matchRepository;
     private final MatchRegistrationRepository registrationRepository;
     private final MatchGroupRepository groupRepository;
     private final MatchScheduleRepository scheduleRepository;
-    private final StudentAccountRepository studentAccountRepository;
     private final PaymentService paymentService;
     private final TableRepository tableRepository;
     private final StudentRepository studentRepository;
+    private final JobMonitor jobMonitor;
+    private final JobLeaseService jobLeaseService;
 
     // 定时任务触发后创建比赛，比赛开始时间为触发后5分钟
     @Scheduled(cron = "0 19 13 23 9 ?") // 触发时间：2025年9月23日10:16
     @Transactional
     public void createMonthlyMatch() {
+        // 多节点部署时只由持有租约的节点创建
+        if (!jobLeaseService.tryAcquire("createMonthlyMatch")) {
+            return;
+        }
         // 获取定时任务触发时的当前时间（包含时分秒）
         LocalDateTime now = LocalDateTime.now();
 
@@ -116,22 +123,13 @@ public class MonthlyMatchService {
             return Result.error(StatusCode.FAIL, "您已报名该月赛");
         }
 
-        // 检查余额
-        Optional<StudentAccountEntity> accountOpt = studentAccountRepository.findByStudentId(studentId);
-        if (accountOpt.isEmpty()) {
-            return Result.error(StatusCode.FAIL, "学员账户不存在");
-        }
-
-        StudentAccountEntity account = accountOpt.get();
+        // 条件扣款（余额不足时不扣减）并创建支付记录
         double fee = 30.0; // 报名费30元
-        if (account.getBalance() < fee) {
-            return Result.error(StatusCode.FAIL, "余额不足，请先充值");
+        String debitError = paymentService.debit(studentId, fee);
+        if (debitError != null) {
+            return Result.error(StatusCode.FAIL, debitError);
         }
-
-        // 创建支付记录并扣减余额
         PaymentRecordEntity paymentRecord = paymentService.createMatchPaymentRecord(studentId, fee);
-        account.setBalance(account.getBalance() - fee);
-        studentAccountRepository.save(account);
 
         // 创建报名记录
         MatchRegistrationEntity registration = new MatchRegistrationEntity();
@@ -148,23 +146,29 @@ public class MonthlyMatchService {
 
     // 定时任务：报名截止后自动安排赛程
     //@Scheduled(cron = "0 0 0 * * ?") // 每天凌晨执行
-    @Scheduled(cron = "0 */1 * * * ?")  // 每1分钟执行一次（测试用，可调整为每小时）
+    @Scheduled(cron = ARRANGE_CRON)
     @Transactional
     public void arrangeMatchesAutomatically() {
-        LocalDateTime now = LocalDateTime.now();
-        // 找到所有已截止报名但未安排赛程的比赛
-        List<MonthlyMatchEntity> matches = matchRepository.findAll().stream()
-                .filter(match -> match.getRegistrationDeadline().isBefore(now) &&
-                        match.getStatus() == MonthlyMatchEntity.MatchStatus.REGISTERING ||
-                        match.getStatus() == MonthlyMatchEntity.MatchStatus.REGISTRATION_CLOSED &&
-                                scheduleRepository.countByMonthlyMatchId(match.getId()) == 0)
-                .collect(Collectors.toList());
-
-        for (MonthlyMatchEntity match : matches) {
-            arrangeMatchSchedule(match.getId());
-            match.setStatus(MonthlyMatchEntity.MatchStatus.REGISTRATION_CLOSED);
-            matchRepository.save(match);
-        }
+        jobMonitor.runCron("arrangeMatchesAutomatically", ARRANGE_CRON, () -> {
+            if (!jobLeaseService.tryAcquire("arrangeMatchesAutomatically")) {
+                return 0; // 由其他节点执行
+            }
+            LocalDateTime now = LocalDateTime.now();
+            // 找到所有已截止报名但未安排赛程的比赛
+            List<MonthlyMatchEntity> matches = matchRepository.findAll().stream()
+                    .filter(match -> match.getRegistrationDeadline().isBefore(now) &&
+                            match.getStatus() == MonthlyMatchEntity.MatchStatus.REGISTERING ||
+                            match.getStatus() == MonthlyMatchEntity.MatchStatus.REGISTRATION_CLOSED &&
+                                    scheduleRepository.countByMonthlyMatchId(match.getId()) == 0)
+                    .collect(Collectors.toList());
+
+            for (MonthlyMatchEntity match : matches) {
+                arrangeMatchSchedule(match.getId());
+                match.setStatus(MonthlyMatchEntity.MatchStatus.REGISTRATION_CLOSED);
+                matchRepository.save(match);
+            }
+            return matches.size();
+        });
     }
 
 
@@ -231,35 +235,41 @@ public class MonthlyMatchService {
      * 定时任务：检查未开始的比赛，自动切换到报名中（或直接截止并安排赛程）
      * 执行频率：每1分钟（测试用，正式环境可改为每10分钟/每小时，根据需求调整）
      */
-    @Scheduled(cron = "0 */1 * * * ?")
+    @Scheduled(cron = SWITCH_STATUS_CRON)
     @Transactional
     public void checkAndSwitchMatchStatus() {
-        LocalDateTime now = LocalDateTime.now();
-        // 1. 查询所有“未开始”状态的比赛
-        List<MonthlyMatchEntity> notStartedMatches = matchRepository.findByStatus(MonthlyMatchEntity.MatchStatus.NOT_STARTED);
-
-        for (MonthlyMatchEntity match : notStartedMatches) {
-            // 计算“报名开始时间”（原代码 registerForMatch 中定义为“比赛开始前1个月”）
-            LocalDateTime registrationStartTime = match.getStartTime().minusMonths(1);
-            // 报名截止时间（已在创建比赛时设置）
-            LocalDateTime registrationDeadline = match.getRegistrationDeadline();
-
-            // 2. 状态流转判断
-            if (now.isAfter(registrationStartTime) || now.isEqual(registrationStartTime)) {
-                // 2.1 若当前时间在“报名开始后 + 截止前”：切换为【报名中】
-                if (now.isBefore(registrationDeadline)) {
-                    match.setStatus(MonthlyMatchEntity.MatchStatus.REGISTERING);
-                    matchRepository.save(match);
-                }
-                // 2.2 若当前时间已过“报名截止时间”：直接切换为【报名截止】并安排赛程
-                else if (now.isAfter(registrationDeadline) || now.isEqual(registrationDeadline)) {
-                    match.setStatus(MonthlyMatchEntity.MatchStatus.REGISTRATION_CLOSED);
-                    matchRepository.save(match);
-                    // 立即安排赛程（避免遗漏）
-                    arrangeMatchSchedule(match.getId());
+        jobMonitor.runCron("checkAndSwitchMatchStatus", SWITCH_STATUS_CRON, () -> {
+            if (!jobLeaseService.tryAcquire("checkAndSwitchMatchStatus")) {
+                return 0; // 由其他节点执行
+            }
+            LocalDateTime now = LocalDateTime.now();
+            // 1. 查询所有“未开始”状态的比赛
+            List<MonthlyMatchEntity> notStartedMatches = matchRepository.findByStatus(MonthlyMatchEntity.MatchStatus.NOT_STARTED);
+
+            for (MonthlyMatchEntity match : notStartedMatches) {
+                // 计算“报名开始时间”（原代码 registerForMatch 中定义为“比赛开始前1个月”）
+                LocalDateTime registrationStartTime = match.getStartTime().minusMonths(1);
+                // 报名截止时间（已在创建比赛时设置）
+                LocalDateTime registrationDeadline = match.getRegistrationDeadline();
+
+                // 2. 状态流转判断
+                if (now.isAfter(registrationStartTime) || now.isEqual(registrationStartTime)) {
+                    // 2.1 若当前时间在“报名开始后 + 截止前”：切换为【报名中】
+                    if (now.isBefore(registrationDeadline)) {
+                        match.setStatus(MonthlyMatchEntity.MatchStatus.REGISTERING);
+                        matchRepository.save(match);
+                    }
+                    // 2.2 若当前时间已过“报名截止时间”：直接切换为【报名截止】并安排赛程
+                    else if (now.isAfter(registrationDeadline) || now.isEqual(registrationDeadline)) {
+                        match.setStatus(MonthlyMatchEntity.MatchStatus.REGISTRATION_CLOSED);
+                        matchRepository.save(match);
+                        // 立即安排赛程（避免遗漏）
+                        arrangeMatchSchedule(match.getId());
+                    }
                 }
             }
-        }
+            return notStartedMatches.size();
+        });
     }
 
     /**
@@ -0,0 +1,254 @@
+package org.example.pingpongsystem.service;
+
+import org.example.pingpongsystem.entity.NotificationEntity;
+import org.example.pingpongsystem.repository.NotificationRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * 通知推送（SSE）：每个节点只用一条查询按ID追踪新写入的通知，再推送给本节点上该用户的所有连接
+ * 数据库读取量与新通知数量成正比，与打开的页面数无关；断线重连时从Last-Event-ID之后补发
+ * 自增ID在插入时分配、提交顺序可能不同，追踪时跳过的ID按区间记为空缺，在gapWindow内按主键范围复查，晚提交的通知也会推送；
+ * 批量插入（如校区公告）可能留下很大的ID空缺，每个区间只用一条BETWEEN查询，复查间隔逐次加倍
+ */
+@Service
+public class NotificationPushService {
+    private static final int REPLAY_LIMIT = 200;
+    private static final int MAX_GAPS = 1000;
+    // 空缺区间的复查间隔：首次1秒，之后逐次加倍，最长8秒
+    private static final long GAP_FIRST_RECHECK_MILLIS = 1000;
+    private static final long GAP_MAX_RECHECK_MILLIS = 8000;
+
+    private final NotificationRepository notificationRepository;
+    private final long timeoutMillis;
+    private final int tailBatchSize;
+    private final long gapWindowMillis;
+
+    private final Map<Key, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    // 已推送的最大通知ID，为空表示尚未开始追踪（没有连接时不查询）
+    private volatile Long tailId;
+    // 追踪时跳过的ID区间（只在定时任务线程中访问）
+    private final List<Gap> gaps = new ArrayList<>();
+
+    public NotificationPushService(NotificationRepository notificationRepository,
+                                   @Value("${notification.push.timeout-ms:1800000}") long timeoutMillis,
+                                   @Value("${notification.push.tail-batch-size:500}") int tailBatchSize,
+                                   @Value("${notification.push.gap-window-ms:60000}") long gapWindowMillis) {
+        this.notificationRepository = notificationRepository;
+        this.timeoutMillis = timeoutMillis;
+        this.tailBatchSize = tailBatchSize;
+        this.gapWindowMillis = gapWindowMillis;
+    }
+
+    /**
+     * 建立推送连接：lastEventId为空时先推送当前未读通知，否则补发该ID之后的通知，之后推送新通知
+     */
+    public SseEmitter subscribe(Long userId, NotificationEntity.UserType userType, Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Key key = new Key(userId, userType);
+        Subscriber subscriber = new Subscriber(emitter, lastEventId == null ? 0L : lastEventId);
+        emitter.onCompletion(() -> unsubscribe(key, subscriber));
+        emitter.onTimeout(() -> unsubscribe(key, subscriber));
+        emitter.onError(e -> unsubscribe(key, subscriber));
+
+        // 持锁登记并补发，补发完成前新通知的推送等待；重复的通知按ID跳过
+        synchronized (subscriber) {
+            // 1. 登记连接并开始追踪新通知（在补发之前，避免遗漏补发查询之后写入的通知）
+            register(key, subscriber);
+            // 2. 补发
+            List<NotificationEntity> missed = lastEventId == null
+                    ? notificationRepository.findByUserIdAndUserTypeAndIsReadFalse(userId, userType)
+                    : notificationRepository.findByUserIdAndUserTypeAndIdGreaterThanOrderByIdAsc(
+                            userId, userType, lastEventId, PageRequest.of(0, REPLAY_LIMIT));
+            missed.stream().sorted(Comparator.comparing(NotificationEntity::getId))
+                    .forEach(subscriber::send);
+        }
+        return emitter;
+    }
+
+    /**
+     * 定时查询新写入的通知并推送给本节点上的连接：先复查之前跳过的ID，再按ID追踪新通知
+     */
+    @Scheduled(fixedDelayString = "${notification.push.poll-interval-ms:1000}")
+    public void pushNewNotifications() {
+        Long fromId = tailId;
+        if (fromId == null) {
+            return;
+        }
+        synchronized (this) {
+            if (subscribers.isEmpty()) {
+                tailId = null; // 没有连接时停止追踪，下次有连接时从最新ID开始
+                gaps.clear();
+                return;
+            }
+        }
+        try {
+            // 1. 复查到期的空缺区间：找到的是晚提交的通知，过了复查期仍不存在的视为已回滚
+            long now = System.currentTimeMillis();
+            recheckGaps(now);
+
+            // 2. 追踪新通知，记录跳过的ID区间
+            List<NotificationEntity> batch;
+            do {
+                batch = notificationRepository.findByIdGreaterThanOrderByIdAsc(fromId, PageRequest.of(0, tailBatchSize));
+                for (NotificationEntity notification : batch) {
+                    if (notification.getId() > fromId + 1 && gaps.size() < MAX_GAPS) {
+                        gaps.add(new Gap(fromId + 1, notification.getId() - 1, now + gapWindowMillis, now));
+                    }
+                    deliver(notification);
+                    fromId = notification.getId();
+                }
+            } while (batch.size() == tailBatchSize);
+            tailId = fromId;
+        } catch (DataAccessException e) {
+            System.err.println("查询新通知失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 心跳：定时发送SSE注释行，保持连接不被代理断开，同时清理已断开的连接
+     */
+    @Scheduled(fixedDelayString = "${notification.push.heartbeat-ms:15000}")
+    public void heartbeat() {
+        subscribers.forEach((key, set) -> set.forEach(Subscriber::ping));
+    }
+
+    // 每个到期的区间一条BETWEEN查询；找到的通知推送后把区间拆成剩余的空缺
+    private void recheckGaps(long now) {
+        gaps.removeIf(gap -> gap.deadline < now);
+        List<Gap> remaining = new ArrayList<>();
+        for (Iterator<Gap> it = gaps.iterator(); it.hasNext(); ) {
+            Gap gap = it.next();
+            if (gap.nextCheckAt > now) {
+                continue;
+            }
+            gap.backoff(now);
+            List<NotificationEntity> found = notificationRepository.findByIdBetweenOrderByIdAsc(gap.fromId, gap.toId);
+            if (found.isEmpty()) {
+                continue;
+            }
+            it.remove();
+            long from = gap.fromId;
+            for (NotificationEntity notification : found) {
+                if (notification.getId() > from) {
+                    remaining.add(gap.sub(from, notification.getId() - 1));
+                }
+                deliver(notification);
+                from = notification.getId() + 1;
+            }
+            if (from <= gap.toId) {
+                remaining.add(gap.sub(from, gap.toId));
+            }
+        }
+        gaps.addAll(remaining);
+    }
+
+    // 与停止追踪互斥：登记后追踪一定处于开启状态
+    private synchronized void register(Key key, Subscriber subscriber) {
+        if (tailId == null) {
+            Long maxId = notificationRepository.findMaxId();
+            tailId = maxId == null ? 0L : maxId;
+        }
+        subscribers.computeIfAbsent(key, k -> new CopyOnWriteArraySet<>()).add(subscriber);
+    }
+
+    private void deliver(NotificationEntity notification) {
+        Set<Subscriber> targets = subscribers.get(new Key(notification.getUserId(), notification.getUserType()));
+        if (targets != null) {
+            targets.forEach(subscriber -> subscriber.send(notification));
+        }
+    }
+
+    private void unsubscribe(Key key, Subscriber subscriber) {
+        subscribers.computeIfPresent(key, (k, set) -> {
+            set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private record Key(Long userId, NotificationEntity.UserType userType) {
+    }
+
+    // 追踪时跳过的ID区间[fromId, toId]：deadline之前按退避间隔复查
+    private static class Gap {
+        private final long fromId;
+        private final long toId;
+        private final long deadline;
+        private long nextCheckAt;
+        private long intervalMillis;
+
+        Gap(long fromId, long toId, long deadline, long now) {
+            this(fromId, toId, deadline, now + GAP_FIRST_RECHECK_MILLIS, GAP_FIRST_RECHECK_MILLIS);
+        }
+
+        private Gap(long fromId, long toId, long deadline, long nextCheckAt, long intervalMillis) {
+            this.fromId = fromId;
+            this.toId = toId;
+            this.deadline = deadline;
+            this.nextCheckAt = nextCheckAt;
+            this.intervalMillis = intervalMillis;
+        }
+
+        void backoff(long now) {
+            intervalMillis = Math.min(intervalMillis * 2, GAP_MAX_RECHECK_MILLIS);
+            nextCheckAt = now + intervalMillis;
+        }
+
+        // 拆分后的子区间沿用截止时间和复查节奏
+        Gap sub(long from, long to) {
+            return new Gap(from, to, deadline, nextCheckAt, intervalMillis);
+        }
+    }
+
+    // 一个推送连接：最近推送过的ID不再重复推送；事件ID取已推送的最大ID，断线重连时从该ID之后补发
+    private static class Subscriber {
+        private static final int RECENT_LIMIT = 1000;
+
+        private final SseEmitter emitter;
+        private long lastSentId;
+        // 最近推送过的通知ID（补发与实时推送重叠、晚提交的通知复查时去重）
+        private final Set<Long> recentIds = new LinkedHashSet<>();
+
+        Subscriber(SseEmitter emitter, long lastSentId) {
+            this.emitter = emitter;
+            this.lastSentId = lastSentId;
+        }
+
+        synchronized void send(NotificationEntity notification) {
+            if (!recentIds.add(notification.getId())) {
+                return;
+            }
+            if (recentIds.size() > RECENT_LIMIT) {
+                Iterator<Long> oldest = recentIds.iterator();
+                oldest.next();
+                oldest.remove();
+            }
+            lastSentId = Math.max(lastSentId, notification.getId());
+            try {
+                emitter.send(SseEmitter.event()
+                        .id(String.valueOf(lastSentId))
+                        .name("notification")
+                        .data(notification));
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
+            }
+        }
+
+        synchronized void ping() {
+            try {
+                emitter.send(SseEmitter.event().comment("ping"));
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.example.pingpongsystem.service;
+
+import org.example.pingpongsystem.repository.NotificationArchiveRepository;
+import org.example.pingpongsystem.repository.NotificationRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 通知保留期：定时把超过保留期的已读通知移到归档表（或直接删除），未读通知不受影响
+ * 每批是一个独立的短事务（先按索引取一批ID，再按主键复制和删除），每次最多处理maxBatches批，剩余的留到下次
+ */
+@Service
+public class NotificationRetentionService {
+    private static final String RETENTION_JOB = "archiveNotifications";
+
+    private final NotificationRepository notificationRepository;
+    private final NotificationArchiveRepository archiveRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final JobMonitor jobMonitor;
+    private final JobLeaseService jobLeaseService;
+    private final String cron;
+    private final long retentionDays;
+    private final boolean archive;
+    private final int batchSize;
+    private final int maxBatches;
+
+    public NotificationRetentionService(NotificationRepository notificationRepository,
+                                        NotificationArchiveRepository archiveRepository,
+                                        TransactionTemplate transactionTemplate, JobMonitor jobMonitor,
+                                        JobLeaseService jobLeaseService,
+                                        @Value("${notification.retention.cron:0 30 3 * * ?}") String cron,
+                                        @Value("${notification.retention.days:90}") long retentionDays,
+                                        @Value("${notification.retention.archive:true}") boolean archive,
+                                        @Value("${notification.retention.batch-size:1000}") int batchSize,
+                                        @Value("${notification.retention.max-batches:100}") int maxBatches) {
+        this.notificationRepository = notificationRepository;
+        this.archiveRepository = archiveRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.jobMonitor = jobMonitor;
+        this.jobLeaseService = jobLeaseService;
+        this.cron = cron;
+        this.retentionDays = retentionDays;
+        this.archive = archive;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+    }
+
+    /**
+     * 定时归档过期的已读通知（默认每天凌晨3:30）
+     * 多节点部署时只由持有租约的节点执行
+     */
+    @Scheduled(cron = "${notification.retention.cron:0 30 3 * * ?}")
+    public void archiveReadNotifications() {
+        jobMonitor.runCron(RETENTION_JOB, cron, () -> {
+            if (!jobLeaseService.tryAcquire(RETENTION_JOB)) {
+                return 0; // 由其他节点执行
+            }
+            return archiveBefore(LocalDateTime.now().minusDays(retentionDays));
+        });
+    }
+
+    /**
+     * 归档（或删除）createTime早于before的已读通知
+     * @return 本次移出热表的条数
+     */
+    public int archiveBefore(LocalDateTime before) {
+        int moved = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            // 1. 取一批过期已读通知的ID（走isRead+createTime索引）
+            List<Long> ids = notificationRepository.findReadIdsBefore(before, PageRequest.of(0, batchSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            // 2. 同一事务内复制到归档表并从热表删除
+            Integer deleted = transactionTemplate.execute(status -> {
+                if (archive) {
+                    archiveRepository.copyFromNotifications(ids);
+                }
+                return notificationRepository.deleteReadByIds(ids);
+            });
+            moved += deleted == null ? 0 : deleted;
+            if (ids.size() < batchSize) {
+                break;
+            }
+        }
+        if (moved > 0) {
+            System.out.println("通知归档完成，本次移出" + moved + "条已读通知");
+        }
+        return moved;
+    }
+}
@@ -1,22 +1,34 @@
 package org.example.pingpongsystem.service;
 
 import lombok.RequiredArgsConstructor;
+import org.example.pingpongsystem.entity.NotificationArchiveEntity;
 import org.example.pingpongsystem.entity.NotificationEntity;
+import org.example.pingpongsystem.repository.NotificationArchiveRepository;
+import org.example.pingpongsystem.repository.NotificationCounterRepository;
 import org.example.pingpongsystem.repository.NotificationRepository;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 
 @Service
 @RequiredArgsConstructor
-public class NotificationService {
+public class NotificationService implements SmartInitializingSingleton {
 
     private final NotificationRepository notificationRepository;
+    private final NotificationCounterRepository notificationCounterRepository;
+    private final NotificationArchiveRepository notificationArchiveRepository;
+    private final NotificationWriter notificationWriter;
 
     /**
-     * 创建通用通知
+     * 创建通用通知：由NotificationWriter在调用方事务提交前批量写入，与业务数据一起提交或回滚
      */
     @Transactional
     public void createNotification(
@@ -36,7 +48,7 @@ public class NotificationService {
         notification.setContent(content);
         notification.setRead(false);
         notification.setCreateTime(LocalDateTime.now());
-        notificationRepository.save(notification);
+        notificationWriter.write(notification);
     }
 
     /**
@@ -73,6 +85,21 @@ public class NotificationService {
                 appointmentId, null, content);
     }
 
+    /**
+     * 校区公告：给校区所有学员和教练各写入一条通知，并累加未读计数
+     * 收件人在数据库内按校区筛选（INSERT ... SELECT），不把成员加载到应用中；四条语句在同一事务中
+     * @return 收到公告的人数
+     */
+    @Transactional
+    public int announceToSchool(Long schoolId, String content) {
+        LocalDateTime now = LocalDateTime.now();
+        int students = notificationRepository.insertStudentAnnouncements(schoolId, content, now);
+        int coaches = notificationRepository.insertCoachAnnouncements(schoolId, content, now);
+        notificationCounterRepository.incrementStudentsOfSchool(schoolId);
+        notificationCounterRepository.incrementCoachesOfSchool(schoolId);
+        return students + coaches;
+    }
+
     /**
      * 获取用户未读通知
      */
@@ -80,15 +107,90 @@ public class NotificationService {
         return notificationRepository.findByUserIdAndUserTypeAndIsReadFalse(userId, userType);
     }
 
+    /**
+     * 历史通知（含已归档的），按ID倒序翻页：beforeId为上一页最后一条的ID，首页传空
+     * 归档表只有较早的已读通知，但与热表中仍未读的旧通知ID交错，所以两张表各取一页后合并
+     */
+    public List<NotificationEntity> getHistory(Long userId, NotificationEntity.UserType userType,
+                                               Long beforeId, int size) {
+        long before = beforeId == null ? Long.MAX_VALUE : beforeId;
+        Pageable page = PageRequest.of(0, size);
+        List<NotificationEntity> history = new ArrayList<>(
+                notificationRepository.findByUserIdAndUserTypeAndIdLessThanOrderByIdDesc(userId, userType, before, page));
+        for (NotificationArchiveEntity archived :
+                notificationArchiveRepository.findByUserIdAndUserTypeAndIdLessThanOrderByIdDesc(userId, userType, before, page)) {
+            history.add(fromArchive(archived));
+        }
+        history.sort(Comparator.comparing(NotificationEntity::getId).reversed());
+        return history.size() > size ? history.subList(0, size) : history;
+    }
+
+    /**
+     * 用户未读通知数（读取计数表，不统计通知表）
+     */
+    public long getUnreadCount(Long userId, NotificationEntity.UserType userType) {
+        Long count = notificationCounterRepository.findUnreadCount(userId, userType);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * 批量标记已读：ids为空时标记该用户全部未读通知
+     * 一条UPDATE标记通知，再按实际标记的条数扣减未读计数，两者在同一事务中
+     * @return 由未读变为已读的条数
+     */
+    @Transactional
+    public int markRead(Long userId, NotificationEntity.UserType userType, Collection<Long> ids) {
+        int marked = ids == null || ids.isEmpty()
+                ? notificationRepository.markAllRead(userId, userType)
+                : notificationRepository.markRead(userId, userType, ids);
+        if (marked > 0) {
+            notificationCounterRepository.decrement(userId, userType.name(), marked);
+        }
+        return marked;
+    }
+
     /**
      * 标记通知为已读
      */
     @Transactional
     public void markNotificationAsRead(Long notificationId) {
         notificationRepository.findById(notificationId)
-                .ifPresent(notification -> {
-                    notification.setRead(true);
-                    notificationRepository.save(notification);
-                });
+                .filter(notification -> !notification.isRead())
+                .ifPresent(notification ->
+                        markRead(notification.getUserId(), notification.getUserType(), List.of(notificationId)));
+    }
+
+    private NotificationEntity fromArchive(NotificationArchiveEntity archived) {
+        NotificationEntity notification = new NotificationEntity();
+        notification.setId(archived.getId());
+        notification.setUserId(archived.getUserId());
+        notification.setUserType(archived.getUserType());
+        notification.setAppointmentId(archived.getAppointmentId());
+        notification.setChangeRequestId(archived.getChangeRequestId());
+        notification.setType(archived.getType());
+        notification.setContent(archived.getContent());
+        notification.setRead(true);
+        notification.setCreateTime(archived.getCreateTime());
+        return notification;
+    }
+
+    // 启动时（开始接收请求之前）迁移旧表结构；计数表为空则按通知表建立未读计数，只在首次启用时执行
+    @Override
+    public void afterSingletonsInstantiated() {
+        // 旧库的通知类型列是enum，不含后来新增的类型，改为varchar（只执行一次）
+        if ("enum".equalsIgnoreCase(notificationRepository.findTypeColumnDataType())) {
+            notificationRepository.convertTypeColumnToVarchar();
+            System.out.println("通知类型列已由enum改为varchar(32)");
+        }
+        if ("enum".equalsIgnoreCase(notificationArchiveRepository.findTypeColumnDataType())) {
+            notificationArchiveRepository.convertTypeColumnToVarchar();
+            System.out.println("归档通知类型列已由enum改为varchar(32)");
+        }
+        if (notificationCounterRepository.count() == 0) {
+            int rebuilt = notificationCounterRepository.rebuildAll();
+            if (rebuilt > 0) {
+                System.out.println("已为" + rebuilt + "个用户建立未读通知计数");
+            }
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,127 @@
+package org.example.pingpongsystem.service;
+
+import org.example.pingpongsystem.entity.NotificationEntity;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 通知批量写入：同一事务内产生的通知先暂存，在事务提交前（beforeCommit）用一条多行INSERT写入，
+ * 与业务数据在同一事务中提交或回滚，进程崩溃也不会丢失已提交业务的通知
+ * 同一事务内按用户累加未读计数（notification_counter_entity）
+ */
+@Component
+public class NotificationWriter {
+    private static final String INSERT_SQL =
+            "INSERT INTO notification_entity (user_id, user_type, appointment_id, change_request_id, type, content, " +
+            "is_read, create_time) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String COUNTER_SQL =
+            "INSERT INTO notification_counter_entity (user_id, user_type, unread_count) VALUES (?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE unread_count = unread_count + VALUES(unread_count)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    public NotificationWriter(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                              @Value("${notification.batch-size:200}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 登记一条通知：在事务中时暂存到当前事务，提交前批量写入（事务回滚则不写入）；不在事务中时立即写入
+     */
+    public void write(NotificationEntity notification) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            transactionTemplate.executeWithoutResult(status -> insert(List.of(notification)));
+            return;
+        }
+        Pending pending = currentPending();
+        if (pending == null) {
+            pending = new Pending();
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.notifications.add(notification);
+        // 一个事务产生大量通知时分批写入，不在内存中累积
+        if (pending.notifications.size() >= batchSize) {
+            pending.writePending();
+        }
+    }
+
+    // written：已写入的通知数；batches：执行的批量INSERT次数
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("written", written.get());
+        stats.put("batches", batches.get());
+        return stats;
+    }
+
+    // 当前事务已登记的暂存列表（按事务的同步回调查找，REQUIRES_NEW挂起外层事务时互不影响）
+    private Pending currentPending() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof Pending pending && pending.owner() == this) {
+                return pending;
+            }
+        }
+        return null;
+    }
+
+    // 在当前事务中写入通知，并累加未读计数
+    private void insert(List<NotificationEntity> batch) {
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        // 按用户汇总本批的未读数；按用户排序后更新计数行，多个事务同时写入时加锁顺序一致，避免死锁
+        Map<String, Object[]> unreadByUser = new TreeMap<>();
+        for (NotificationEntity n : batch) {
+            rows.add(new Object[]{n.getUserId(), n.getUserType().name(), n.getAppointmentId(), n.getChangeRequestId(),
+                    n.getType().name(), n.getContent(), n.isRead(), Timestamp.valueOf(n.getCreateTime())});
+            if (!n.isRead()) {
+                Object[] counter = unreadByUser.computeIfAbsent(n.getUserType().name() + ":" + n.getUserId(),
+                        key -> new Object[]{n.getUserId(), n.getUserType().name(), 0L});
+                counter[2] = (Long) counter[2] + 1;
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+        if (!unreadByUser.isEmpty()) {
+            jdbcTemplate.batchUpdate(COUNTER_SQL, new ArrayList<>(unreadByUser.values()));
+        }
+        written.addAndGet(batch.size());
+        batches.incrementAndGet();
+    }
+
+    // 当前事务中尚未写入的通知，提交前写入
+    private class Pending implements TransactionSynchronization {
+        private final List<NotificationEntity> notifications = new ArrayList<>();
+
+        NotificationWriter owner() {
+            return NotificationWriter.this;
+        }
+
+        void writePending() {
+            if (!notifications.isEmpty()) {
+                insert(new ArrayList<>(notifications));
+                notifications.clear();
+            }
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            writePending();
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package org.example.pingpongsystem.service;
+
+import org.example.pingpongsystem.entity.OutboxEventEntity;
+import org.example.pingpongsystem.entity.PaymentRecordEntity;
+import org.example.pingpongsystem.repository.OutboxEventRepository;
+import org.example.pingpongsystem.repository.PaymentRecordRepository;
+import org.example.pingpongsystem.utility.Result;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 资金操作发件箱：退款、教练课时费结算先与业务状态变更在同一事务中登记为事件，
+ * 再由后台任务执行（课时费结算整批执行，退款逐条执行），失败按指数退避重试，超过次数标记为FAILED等待人工处理
+ */
+@Service
+public class OutboxService {
+    private static final String INSERT_EVENT_SQL =
+            "INSERT IGNORE INTO outbox_event_entity (event_type, related_id, status, attempts, next_attempt_at, create_time) " +
+            "VALUES (?, ?, ?, 0, ?, ?)";
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final PaymentService paymentService;
+    private final CourseSettlementService courseSettlementService;
+    private final PaymentRecordRepository paymentRecordRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate failureTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final JobMonitor jobMonitor;
+    private final long pollIntervalMillis;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long retryBaseSeconds;
+
+    // 本进程启动以来的处理统计
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public OutboxService(OutboxEventRepository outboxEventRepository, PaymentService paymentService,
+                         CourseSettlementService courseSettlementService, PaymentRecordRepository paymentRecordRepository,
+                         PlatformTransactionManager transactionManager, JdbcTemplate jdbcTemplate,
+                         JobMonitor jobMonitor, @Value("${outbox.poll-interval-ms:1000}") long pollIntervalMillis,
+                         @Value("${outbox.batch-size:100}") int batchSize,
+                         @Value("${outbox.max-attempts:8}") int maxAttempts,
+                         @Value("${outbox.retry-base-seconds:5}") long retryBaseSeconds) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.paymentService = paymentService;
+        this.courseSettlementService = courseSettlementService;
+        this.paymentRecordRepository = paymentRecordRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // 记录失败使用新事务，不受执行事务回滚影响
+        this.failureTemplate = new TransactionTemplate(transactionManager);
+        this.failureTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.jdbcTemplate = jdbcTemplate;
+        this.jobMonitor = jobMonitor;
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.retryBaseSeconds = retryBaseSeconds;
+    }
+
+    /**
+     * 登记事件：必须在业务事务中调用，与状态变更一起提交或回滚；同一操作重复登记时忽略
+     */
+    public void enqueue(OutboxEventEntity.EventType eventType, Long relatedId) {
+        // 由唯一索引(eventType, relatedId)忽略重复登记：并发登记同一操作时不会因唯一键冲突回滚业务事务
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.update(INSERT_EVENT_SQL, eventType.name(), relatedId, OutboxEventEntity.Status.PENDING.name(), now, now);
+    }
+
+    // 批量登记同类事件（一次JDBC批量插入，已登记的由唯一索引忽略）
+    public void enqueueAll(OutboxEventEntity.EventType eventType, List<Long> relatedIds) {
+        if (relatedIds.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>();
+        for (Long relatedId : relatedIds) {
+            rows.add(new Object[]{eventType.name(), relatedId, OutboxEventEntity.Status.PENDING.name(), now, now});
+        }
+        jdbcTemplate.batchUpdate(INSERT_EVENT_SQL, rows);
+    }
+
+    /**
+     * 定时取出到期事件执行：课时费结算整批执行（按教练汇总），退款逐条执行
+     * 多节点同时运行时，被其他节点锁定的事件会被跳过
+     */
+    @Scheduled(fixedDelayString = "${outbox.poll-interval-ms:1000}")
+    public void processDueEvents() {
+        jobMonitor.runFixedDelay("processOutboxEvents", pollIntervalMillis, this::drainDueEvents);
+    }
+
+    // 处理到期事件直到没有更多，返回处理的事件数
+    private int drainDueEvents() {
+        int total = 0;
+        boolean more;
+        do {
+            LocalDateTime now = LocalDateTime.now();
+            PageRequest page = PageRequest.of(0, batchSize);
+            List<Long> settlementIds = outboxEventRepository.findDueIds(OutboxEventEntity.Status.PENDING,
+                    OutboxEventEntity.EventType.COACH_SETTLEMENT, now, page);
+            int handled = settlementIds.isEmpty() ? 0 : settleBatch(settlementIds);
+
+            List<Long> refundIds = outboxEventRepository.findDueIds(OutboxEventEntity.Status.PENDING,
+                    OutboxEventEntity.EventType.REFUND, now, page);
+            for (Long id : refundIds) {
+                if (process(id)) {
+                    handled++;
+                }
+            }
+            // 取满一批且有进展时继续；全部被其他节点锁定时等下一轮
+            total += handled;
+            more = handled > 0 && (settlementIds.size() == batchSize || refundIds.size() == batchSize);
+        } while (more);
+        return total;
+    }
+
+    /**
+     * 一个事务内结算一批课程；整批失败时退回逐条执行，由逐条执行记录各自的失败和重试
+     * 返回处理的事件数
+     */
+    private int settleBatch(List<Long> ids) {
+        try {
+            Integer handled = transactionTemplate.execute(status -> {
+                // 1. 锁定事件，跳过已被其他节点处理或锁定的
+                List<OutboxEventEntity> events = outboxEventRepository.lockAllById(ids).stream()
+                        .filter(event -> event.getStatus() == OutboxEventEntity.Status.PENDING)
+                        .toList();
+                if (events.isEmpty()) {
+                    return 0;
+                }
+                // 2. 按教练汇总结算，并批量标记事件为已执行
+                courseSettlementService.settle(events.stream().map(OutboxEventEntity::getRelatedId).toList());
+                List<Long> eventIds = events.stream().map(OutboxEventEntity::getId).toList();
+                outboxEventRepository.markDone(eventIds, LocalDateTime.now());
+                return eventIds.size();
+            });
+            processed.addAndGet(handled);
+            return handled;
+        } catch (RuntimeException e) {
+            System.err.println("批量结算课时费失败，改为逐条执行：" + e.getMessage());
+            int handled = 0;
+            for (Long id : ids) {
+                if (process(id)) {
+                    handled++;
+                }
+            }
+            return handled;
+        }
+    }
+
+    // 在独立事务中执行单个事件，返回是否处理了该事件（成功或记录了失败）
+    private boolean process(Long id) {
+        try {
+            Boolean handled = transactionTemplate.execute(status -> {
+                // 1. 锁定事件，已被其他节点处理或锁定则跳过
+                OutboxEventEntity event = outboxEventRepository.lockById(id).orElse(null);
+                if (event == null || event.getStatus() != OutboxEventEntity.Status.PENDING) {
+                    return false;
+                }
+                // 2. 执行资金操作，与事件状态在同一事务中提交
+                apply(event);
+                event.setStatus(OutboxEventEntity.Status.DONE);
+                event.setProcessedTime(LocalDateTime.now());
+                event.setLastError(null);
+                outboxEventRepository.save(event);
+                return true;
+            });
+            if (Boolean.TRUE.equals(handled)) {
+                processed.incrementAndGet();
+                return true;
+            }
+            return false;
+        } catch (RuntimeException e) {
+            recordFailure(id, e);
+            return true;
+        }
+    }
+
+    private void apply(OutboxEventEntity event) {
+        switch (event.getEventType()) {
+            case REFUND -> refund(event.getRelatedId());
+            case COACH_SETTLEMENT -> courseSettlementService.settle(List.of(event.getRelatedId()));
+        }
+    }
+
+    private void refund(Long paymentRecordId) {
+        PaymentRecordEntity record = paymentRecordRepository.findById(paymentRecordId)
+                .orElseThrow(() -> new IllegalStateException("支付记录不存在：" + paymentRecordId));
+        if (record.getStatus() == PaymentRecordEntity.PaymentStatus.REFUNDED) {
+            return; // 已退款
+        }
+        Result<String> result = paymentService.refund(paymentRecordId);
+        if (!result.isSuccess()) {
+            throw new IllegalStateException(result.getMessage());
+        }
+    }
+
+    // 记录失败并安排重试：第n次失败后等待 base * 2^(n-1) 秒，超过最大次数标记为FAILED
+    private void recordFailure(Long id, RuntimeException cause) {
+        try {
+            failureTemplate.executeWithoutResult(status -> outboxEventRepository.findById(id).ifPresent(event -> {
+                if (event.getStatus() != OutboxEventEntity.Status.PENDING) {
+                    return;
+                }
+                int attempts = event.getAttempts() + 1;
+                event.setAttempts(attempts);
+                String message = String.valueOf(cause.getMessage());
+                event.setLastError(message.length() > 500 ? message.substring(0, 500) : message);
+                if (attempts >= maxAttempts) {
+                    event.setStatus(OutboxEventEntity.Status.FAILED);
+                    failed.incrementAndGet();
+                    System.err.println("资金事件" + id + "（" + event.getEventType() + "）重试" + attempts + "次仍失败，需人工处理：" + message);
+                } else {
+                    long delay = retryBaseSeconds << Math.min(attempts - 1, 20);
+                    event.setNextAttemptAt(LocalDateTime.now().plusSeconds(delay));
+                    retried.incrementAndGet();
+                }
+                outboxEventRepository.save(event);
+            }));
+        } catch (RuntimeException e) {
+            System.err.println("记录资金事件" + id + "失败状态出错：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 发件箱运行指标：积压数量、最早积压事件的等待时间（秒）及处理统计
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", outboxEventRepository.countByStatus(OutboxEventEntity.Status.PENDING));
+        stats.put("failed", outboxEventRepository.countByStatus(OutboxEventEntity.Status.FAILED));
+        LocalDateTime oldest = outboxEventRepository.findOldestCreateTime(OutboxEventEntity.Status.PENDING);
+        stats.put("lagSeconds", oldest == null ? 0 : Duration.between(oldest, LocalDateTime.now()).toSeconds());
+        stats.put("processedSinceStart", processed.get());
+        stats.put("retriedSinceStart", retried.get());
+        stats.put("failedSinceStart", failed.get());
+        return stats;
+    }
+}
@@ -0,0 +1,77 @@
+package org.example.pingpongsystem.service;
+
+import org.example.pingpongsystem.entity.PaymentRecordEntity;
+import org.example.pingpongsystem.repository.PaymentRecordRepository;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 交易记录总数缓存：查询条件 -> 近似总数
+ * 翻页时不再同步执行COUNT，缺失或过期时提交到后台线程重新统计，先返回旧值（首次为空）
+ */
+@Component
+public class PaymentRecordCountCache {
+    private final PaymentRecordRepository paymentRecordRepository;
+    private final TaskExecutor executor;
+    private final int maxSize;
+    private final long ttlMillis;
+
+    private final Map<Key, CachedCount> counts = new ConcurrentHashMap<>();
+    // 正在统计的条件，避免同一条件重复提交
+    private final Set<Key> refreshing = ConcurrentHashMap.newKeySet();
+
+    public PaymentRecordCountCache(PaymentRecordRepository paymentRecordRepository,
+                                   @Qualifier("backgroundTaskExecutor") TaskExecutor executor,
+                                   @Value("${payment.count-cache.max-size:10000}") int maxSize,
+                                   @Value("${payment.count-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.paymentRecordRepository = paymentRecordRepository;
+        this.executor = executor;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    /**
+     * 返回缓存的总数（可能为空或略旧），需要时在后台刷新
+     */
+    public Long approximateTotal(Long schoolId, Long studentId, PaymentRecordEntity.PaymentStatus status,
+                                 PaymentRecordEntity.PaymentMethod method) {
+        Key key = new Key(schoolId, studentId, status, method);
+        CachedCount cached = counts.get(key);
+        if ((cached == null || cached.expireAt() < System.currentTimeMillis()) && refreshing.add(key)) {
+            try {
+                executor.execute(() -> refresh(key));
+            } catch (RuntimeException e) {
+                refreshing.remove(key); // 线程池已关闭等情况，下次再试
+            }
+        }
+        return cached == null ? null : cached.total();
+    }
+
+    private void refresh(Key key) {
+        try {
+            long total = paymentRecordRepository.countFiltered(key.schoolId(), key.studentId(), key.status(), key.method());
+            if (counts.size() >= maxSize) {
+                counts.clear(); // 条件组合过多时整体清空，计数只是近似值
+            }
+            counts.put(key, new CachedCount(total, System.currentTimeMillis() + ttlMillis));
+        } catch (DataAccessException e) {
+            System.err.println("统计交易记录总数失败：" + e.getMessage());
+        } finally {
+            refreshing.remove(key);
+        }
+    }
+
+    private record Key(Long schoolId, Long studentId, PaymentRecordEntity.PaymentStatus status,
+                       PaymentRecordEntity.PaymentMethod method) {
+    }
+
+    private record CachedCount(long total, long expireAt) {
+    }
+}
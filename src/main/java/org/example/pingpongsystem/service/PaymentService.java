@@ -1,11 +1,15 @@
 package org.example.pingpongsystem.service;
 
+import org.example.pingpongsystem.dto.PaymentRecordSliceDTO;
+import org.example.pingpongsystem.entity.LedgerEntryEntity;
 import org.example.pingpongsystem.entity.PaymentRecordEntity;
 import org.example.pingpongsystem.entity.StudentAccountEntity;
 import org.example.pingpongsystem.repository.PaymentRecordRepository;
 import org.example.pingpongsystem.repository.StudentAccountRepository;
+import org.example.pingpongsystem.utility.MoneyUtil;
 import org.example.pingpongsystem.utility.Result;
 import org.example.pingpongsystem.utility.StatusCode;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -17,17 +21,65 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 import jakarta.persistence.criteria.Predicate;
 
 @Service
-public class PaymentService {
+public class PaymentService implements SmartInitializingSingleton {
+    private static final int MAX_SLICE_SIZE = 100;
+
     private final StudentAccountRepository accountRepository;
     private final PaymentRecordRepository paymentRecordRepository;
+    private final LedgerService ledgerService;
+    private final PaymentRecordCountCache paymentRecordCountCache;
 
-    public PaymentService(StudentAccountRepository accountRepository, PaymentRecordRepository paymentRecordRepository) {
+    public PaymentService(StudentAccountRepository accountRepository, PaymentRecordRepository paymentRecordRepository,
+                          LedgerService ledgerService, PaymentRecordCountCache paymentRecordCountCache) {
         this.accountRepository = accountRepository;
         this.paymentRecordRepository = paymentRecordRepository;
+        this.ledgerService = ledgerService;
+        this.paymentRecordCountCache = paymentRecordCountCache;
+    }
+
+    // 启动时（开始接收请求之前）为旧账户补齐以分为单位的余额
+    @Override
+    public void afterSingletonsInstantiated() {
+        int updated = accountRepository.backfillBalanceCents();
+        if (updated > 0) {
+            System.out.println("已为" + updated + "个学员账户补充余额（分）");
+        }
+        // 余额（分）补齐后才能记录账本期初余额
+        ledgerService.postOpeningBalances();
+    }
+
+    /**
+     * 条件扣款：一条UPDATE完成余额检查和扣减
+     * @return 成功返回null，失败返回错误提示
+     */
+    public String debit(Long studentId, double amount) {
+        if (accountRepository.debit(studentId, MoneyUtil.toCents(amount)) == 1) {
+            return null;
+        }
+        Optional<StudentAccountEntity> accountOpt = accountRepository.findByStudentId(studentId);
+        if (accountOpt.isEmpty()) {
+            return "学生账户不存在，请先开通账户";
+        }
+        return String.format("余额不足，当前余额: %.2f元，所需金额: %.2f元", accountOpt.get().getBalance(), amount);
+    }
+
+    // 充值入账：账户不存在时创建账户，并记入账本
+    private void recharge(Long studentId, double amount, Long recordId) {
+        long cents = MoneyUtil.toCents(amount);
+        if (accountRepository.credit(studentId, cents) == 0) {
+            StudentAccountEntity newAccount = new StudentAccountEntity();
+            newAccount.setStudentId(studentId);
+            newAccount.setBalance(amount);
+            accountRepository.save(newAccount);
+        }
+        ledgerService.transfer(LedgerEntryEntity.EntryType.RECHARGE, recordId,
+                LedgerEntryEntity.AccountType.CASH, LedgerService.PLATFORM_ACCOUNT_ID,
+                LedgerEntryEntity.AccountType.STUDENT, studentId, cents);
     }
 
     // 获取学员账户余额
@@ -87,14 +139,7 @@ public class PaymentService {
         paymentRecordRepository.save(record);
 
         // 更新账户余额（充值金额为正数，添加到余额）
-        StudentAccountEntity account = accountRepository.findByStudentId(record.getStudentId())
-                .orElseGet(() -> {
-                    StudentAccountEntity newAccount = new StudentAccountEntity();
-                    newAccount.setStudentId(record.getStudentId());
-                    return newAccount;
-                });
-        account.setBalance(account.getBalance() + record.getAmount());
-        accountRepository.save(account);
+        recharge(record.getStudentId(), record.getAmount(), record.getId());
 
         return Result.success("支付成功，余额已更新");
     }
@@ -136,15 +181,25 @@ public class PaymentService {
         refundRecord.setRefundTime(LocalDateTime.now());
         paymentRecordRepository.save(refundRecord);
 
-        // 更新原始记录状态
-        //originalRecord.setStatus("REFUNDED");
+        // 更新原始记录状态，防止重复退款
+        originalRecord.setStatus(PaymentRecordEntity.PaymentStatus.REFUNDED);
         paymentRecordRepository.save(originalRecord);
 
-        // 退还金额到学员账户
-        StudentAccountEntity account = accountRepository.findByStudentId(originalRecord.getStudentId())
-                .orElseThrow(() -> new RuntimeException("学员账户不存在"));
-        account.setBalance(account.getBalance() + originalRecord.getAmount()); // 加上退款金额
-        accountRepository.save(account);
+        // 按退款记录金额调整学员账户：消费退款为正数（退回余额），充值退款为负数（从余额扣回）
+        long refundCents = MoneyUtil.toCents(refundRecord.getAmount());
+        if (refundCents >= 0) {
+            if (accountRepository.credit(originalRecord.getStudentId(), refundCents) == 0) {
+                throw new RuntimeException("学员账户不存在");
+            }
+        } else if (accountRepository.debit(originalRecord.getStudentId(), -refundCents) == 0) {
+            throw new RuntimeException("余额不足，无法退回充值");
+        }
+        // 余额支付的退款从平台代收款中退回，充值的退款与外部资金往来
+        LedgerEntryEntity.AccountType counterpart = originalRecord.getPaymentMethod() == PaymentRecordEntity.PaymentMethod.ACCOUNT
+                ? LedgerEntryEntity.AccountType.ESCROW : LedgerEntryEntity.AccountType.CASH;
+        ledgerService.transfer(LedgerEntryEntity.EntryType.REFUND, refundRecord.getId(),
+                counterpart, LedgerService.PLATFORM_ACCOUNT_ID,
+                LedgerEntryEntity.AccountType.STUDENT, originalRecord.getStudentId(), refundCents);
 
         return Result.success("退款成功");
     }
@@ -160,7 +215,12 @@ public class PaymentService {
         record.setCreateTime(LocalDateTime.now());
         record.setPayTime(LocalDateTime.now());
 
-        return paymentRecordRepository.save(record);
+        PaymentRecordEntity saved = paymentRecordRepository.save(record);
+        // 课程费先由平台代收，课程完成后转给教练
+        ledgerService.transfer(LedgerEntryEntity.EntryType.COURSE_PAYMENT, saved.getId(),
+                LedgerEntryEntity.AccountType.STUDENT, studentId,
+                LedgerEntryEntity.AccountType.ESCROW, LedgerService.PLATFORM_ACCOUNT_ID, MoneyUtil.toCents(amount));
+        return saved;
     }
 
     // 新增：获取交易记录
@@ -198,6 +258,50 @@ public class PaymentService {
         return Result.success(records);
     }
 
+    /**
+     * 交易记录游标分页（不执行COUNT）：按创建时间倒序，schoolId不为空时只查该校区学员，studentId为空时查询全部学员
+     * 总数取自后台异步统计的缓存，可能为空或略有延迟
+     */
+    public Result<PaymentRecordSliceDTO> getPaymentRecordSlice(
+            Long schoolId, Long studentId, String status, String method, String cursor, int size) {
+        if (size < 1 || size > MAX_SLICE_SIZE) {
+            return Result.error(StatusCode.FAIL, "每页数量需在1到" + MAX_SLICE_SIZE + "之间");
+        }
+        PaymentRecordEntity.PaymentStatus statusFilter;
+        PaymentRecordEntity.PaymentMethod methodFilter;
+        try {
+            statusFilter = status == null || status.isEmpty() ? null : PaymentRecordEntity.PaymentStatus.valueOf(status);
+            methodFilter = method == null || method.isEmpty() ? null : PaymentRecordEntity.PaymentMethod.valueOf(method);
+        } catch (IllegalArgumentException e) {
+            return Result.error(StatusCode.FAIL, "无效的筛选条件");
+        }
+
+        // 游标为上一页最后一条的"创建时间_ID"；没有游标时从最新的记录开始
+        LocalDateTime cursorTime = LocalDateTime.now().plusYears(100);
+        long cursorId = Long.MAX_VALUE;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                int separator = cursor.lastIndexOf('_');
+                cursorTime = LocalDateTime.parse(cursor.substring(0, separator));
+                cursorId = Long.parseLong(cursor.substring(separator + 1));
+            } catch (RuntimeException e) {
+                return Result.error(StatusCode.FAIL, "无效的分页游标");
+            }
+        }
+
+        // 多取一条判断是否还有下一页
+        List<PaymentRecordEntity> rows = paymentRecordRepository.findSlice(
+                schoolId, studentId, statusFilter, methodFilter, cursorTime, cursorId, PageRequest.of(0, size + 1));
+        String nextCursor = null;
+        if (rows.size() > size) {
+            rows = new ArrayList<>(rows.subList(0, size));
+            PaymentRecordEntity last = rows.get(size - 1);
+            nextCursor = last.getCreateTime() + "_" + last.getId();
+        }
+        Long total = paymentRecordCountCache.approximateTotal(schoolId, studentId, statusFilter, methodFilter);
+        return Result.success(new PaymentRecordSliceDTO(rows, nextCursor, total));
+    }
+
     /**
      * 管理员线下给学生充值
      * @param studentId 学生ID
@@ -224,14 +328,7 @@ public class PaymentService {
         PaymentRecordEntity savedRecord = paymentRecordRepository.save(record);
 
         // 更新学生账户余额
-        StudentAccountEntity account = accountRepository.findByStudentId(studentId)
-                .orElseGet(() -> {
-                    StudentAccountEntity newAccount = new StudentAccountEntity();
-                    newAccount.setStudentId(studentId);
-                    return newAccount;
-                });
-        account.setBalance(account.getBalance() + amount);
-        accountRepository.save(account);
+        recharge(studentId, amount, savedRecord.getId());
 
         return Result.success(savedRecord);
     }
@@ -244,6 +341,10 @@ public class PaymentService {
         record.setPaymentMethod(PaymentRecordEntity.PaymentMethod.ACCOUNT);
         record.setStatus(PaymentRecordEntity.PaymentStatus.SUCCESS);
         record.setCreateTime(LocalDateTime.now());
-        return paymentRecordRepository.save(record);
+        PaymentRecordEntity saved = paymentRecordRepository.save(record);
+        ledgerService.transfer(LedgerEntryEntity.EntryType.MATCH_FEE, saved.getId(),
+                LedgerEntryEntity.AccountType.STUDENT, studentId,
+                LedgerEntryEntity.AccountType.REVENUE, LedgerService.PLATFORM_ACCOUNT_ID, MoneyUtil.toCents(amount));
+        return saved;
     }
 }
\ No newline at end of file
@@ -0,0 +1,274 @@
+package org.example.pingpongsystem.service;
+
+import lombok.RequiredArgsConstructor;
+import org.example.pingpongsystem.dto.SeriesOccurrenceDTO;
+import org.example.pingpongsystem.entity.*;
+import org.example.pingpongsystem.repository.*;
+import org.example.pingpongsystem.utility.MoneyUtil;
+import org.example.pingpongsystem.utility.Result;
+import org.example.pingpongsystem.utility.StatusCode;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * 连续多周预约：所有课次先统一校验并分配球台，再在一个事务内一次扣款、批量写入支付记录和预约
+ * 任一课次不可预约时整体不预约，返回每个课次的结果
+ */
+@Service
+@RequiredArgsConstructor
+public class SeriesBookingService {
+    private static final int MAX_WEEKS = 26; // 最多一个学期
+
+    private static final String INSERT_PAYMENT_SQL =
+            "INSERT INTO payment_record_entity (student_id, amount, payment_method, status, create_time, pay_time) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_APPOINTMENT_SQL =
+            "INSERT INTO course_appointment_entity (coach_id, student_id, school_id, start_time, end_time, table_id, " +
+            "status, amount, payment_record_id, version) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, 0)";
+
+    private final CoachTeachStudentRepository relationRepository;
+    private final CoachRepository coachRepository;
+    private final TableRepository tableRepository;
+    private final PaymentService paymentService;
+    private final LedgerService ledgerService;
+    private final CourseAppointmentRepository appointmentRepository;
+    private final TableOccupancyIndex tableOccupancyIndex;
+    private final TableReservationManager tableReservationManager;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * 从首次课程开始，每周同一时段预约，共weeks次
+     * @param tableId 指定球台；为null时自动分配（尽量整个系列使用同一张球台）
+     */
+    public Result<List<SeriesOccurrenceDTO>> bookSeries(Long coachId, Long studentId, LocalDateTime firstStart,
+                                                        LocalDateTime firstEnd, int weeks, Long tableId) {
+        // 1. 基本校验（整个系列只做一次）
+        if (weeks < 1 || weeks > MAX_WEEKS) {
+            return Result.error(StatusCode.FAIL, "预约周数需在1到" + MAX_WEEKS + "之间");
+        }
+        if (!firstEnd.isAfter(firstStart)) {
+            return Result.error(StatusCode.FAIL, "结束时间必须晚于开始时间");
+        }
+        if (!relationRepository.existsByCoachIdAndStudentIdAndIsConfirmed(coachId, studentId, true)) {
+            return Result.error(StatusCode.FAIL, "未与该教练建立双选关系");
+        }
+        Optional<CoachEntity> coachOpt = coachRepository.findById(coachId);
+        if (coachOpt.isEmpty()) {
+            return Result.error(StatusCode.FAIL, "教练不存在");
+        }
+        CoachEntity coach = coachOpt.get();
+        if (coach.getSchoolId() == null) {
+            return Result.error(StatusCode.FAIL, "教练未分配校区");
+        }
+        Double hourlyRate = CourseAppointmentService.hourlyRateOf(coach.getLevel());
+        if (hourlyRate == null) {
+            return Result.error(StatusCode.FAIL, "教练等级设置异常");
+        }
+        double amount = CourseAppointmentService.courseAmount(hourlyRate, firstStart, firstEnd);
+
+        for (int attempt = 1; ; attempt++) {
+            // 2. 按内存索引为每个课次分配球台
+            List<SeriesOccurrenceDTO> occurrences = assignTables(coach.getSchoolId(), firstStart, firstEnd, weeks, tableId);
+            if (occurrences.stream().anyMatch(o -> !o.isSuccess())) {
+                return new Result<>(StatusCode.FAIL, "部分课次无法预约，本次未预约任何课程", occurrences);
+            }
+
+            // 3. 锁定涉及的所有球台，在一个事务内完成
+            Set<Long> tableIds = new TreeSet<>();
+            occurrences.forEach(o -> tableIds.add(o.getTableId()));
+            try {
+                return tableReservationManager.reserveAll(tableIds, () -> transactionTemplate.execute(status -> {
+                    Result<List<SeriesOccurrenceDTO>> result =
+                            bookInTransaction(coach, studentId, occurrences, tableIds, amount);
+                    if (!result.isSuccess()) {
+                        status.setRollbackOnly();
+                    }
+                    return result;
+                }));
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= tableReservationManager.getMaxAttempts() || !tableReservationManager.backoff(attempt)) {
+                    System.err.println("连续预约并发冲突，重试" + attempt + "次仍失败：" + e.getMessage());
+                    return Result.error(StatusCode.FAIL, "操作过于频繁，请稍后重试");
+                }
+            }
+        }
+    }
+
+    private List<SeriesOccurrenceDTO> assignTables(Long schoolId, LocalDateTime firstStart, LocalDateTime firstEnd,
+                                                   int weeks, Long tableId) {
+        List<SeriesOccurrenceDTO> occurrences = new ArrayList<>();
+        Long preferred = tableId;
+        for (int i = 0; i < weeks; i++) {
+            SeriesOccurrenceDTO occurrence = new SeriesOccurrenceDTO(firstStart.plusWeeks(i), firstEnd.plusWeeks(i));
+            occurrences.add(occurrence);
+            if (occurrence.getStartTime().isBefore(LocalDateTime.now())) {
+                occurrence.setMessage("课程时间已过");
+                continue;
+            }
+            Long assigned = null;
+            if (preferred != null && tableOccupancyIndex.isTableFree(schoolId, preferred,
+                    occurrence.getStartTime(), occurrence.getEndTime())) {
+                assigned = preferred;
+            } else if (tableId == null) {
+                assigned = tableOccupancyIndex.findFreeTable(schoolId, occurrence.getStartTime(), occurrence.getEndTime());
+                if (preferred == null) {
+                    preferred = assigned; // 后续课次优先沿用同一张球台
+                }
+            }
+            if (assigned == null) {
+                occurrence.setMessage(tableId == null ? "无可用球台" : "所选球台该时段不可用或不属于该教练所在校区");
+                continue;
+            }
+            occurrence.setTableId(assigned);
+            occurrence.setSuccess(true);
+        }
+        return occurrences;
+    }
+
+    private Result<List<SeriesOccurrenceDTO>> bookInTransaction(CoachEntity coach, Long studentId,
+                                                                List<SeriesOccurrenceDTO> occurrences,
+                                                                Set<Long> tableIds, double amount) {
+        Long schoolId = coach.getSchoolId();
+        // 1. 锁定球台行，并以数据库为准一次性检查所有课次的冲突
+        List<TableEntity> tables = tableRepository.findAllByIdForUpdate(tableIds);
+        if (tables.size() != tableIds.size() || tables.stream().anyMatch(t -> !t.getSchoolId().equals(schoolId))) {
+            return Result.error(StatusCode.FAIL, "所选球台不可用或不属于该教练所在校区");
+        }
+        LocalDateTime rangeStart = occurrences.get(0).getStartTime();
+        LocalDateTime rangeEnd = occurrences.get(occurrences.size() - 1).getEndTime();
+        List<CourseAppointmentEntity> existing = appointmentRepository
+                .findByTableIdInAndStatusInAndStartTimeLessThanAndEndTimeGreaterThan(
+                        tableIds, TableOccupancyIndex.ACTIVE_STATUSES, rangeEnd, rangeStart);
+        boolean conflict = false;
+        for (SeriesOccurrenceDTO occurrence : occurrences) {
+            for (CourseAppointmentEntity appointment : existing) {
+                if (appointment.getTableId().equals(occurrence.getTableId())
+                        && appointment.getStartTime().isBefore(occurrence.getEndTime())
+                        && appointment.getEndTime().isAfter(occurrence.getStartTime())) {
+                    occurrence.setSuccess(false);
+                    occurrence.setMessage("球台该时段已被预约");
+                    conflict = true;
+                    break;
+                }
+            }
+        }
+        if (conflict) {
+            // 索引落后于数据库（如其他节点的预约），重新加载
+            tableOccupancyIndex.invalidateSchool(schoolId);
+            return new Result<>(StatusCode.FAIL, "部分课次无法预约，本次未预约任何课程", occurrences);
+        }
+
+        // 锁定教练行（球台之后加锁，与单次预约的加锁顺序一致），检查教练各课次时段是否已有课程
+        coachRepository.findByIdForUpdate(coach.getId());
+        List<CourseAppointmentEntity> coachBusy = appointmentRepository
+                .findByCoachIdAndStatusInAndStartTimeLessThanAndEndTimeGreaterThan(
+                        coach.getId(), TableOccupancyIndex.ACTIVE_STATUSES, rangeEnd, rangeStart);
+        for (SeriesOccurrenceDTO occurrence : occurrences) {
+            for (CourseAppointmentEntity appointment : coachBusy) {
+                if (appointment.getStartTime().isBefore(occurrence.getEndTime())
+                        && appointment.getEndTime().isAfter(occurrence.getStartTime())) {
+                    occurrence.setSuccess(false);
+                    occurrence.setMessage("教练该时段已有课程");
+                    conflict = true;
+                    break;
+                }
+            }
+        }
+        if (conflict) {
+            return new Result<>(StatusCode.FAIL, "部分课次无法预约，本次未预约任何课程", occurrences);
+        }
+
+        // 2. 一条条件UPDATE扣减总金额（按分计算，与逐次扣款金额一致）
+        double total = MoneyUtil.toYuan(MoneyUtil.toCents(amount) * occurrences.size());
+        String debitError = paymentService.debit(studentId, total);
+        if (debitError != null) {
+            return Result.error(StatusCode.FAIL, debitError);
+        }
+
+        // 3. 批量写入支付记录（每个课次一条，取消单次课程时可单独退款）
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Long> paymentIds = batchInsert(INSERT_PAYMENT_SQL, occurrences.size(), (ps, i) -> {
+            ps.setLong(1, studentId);
+            ps.setDouble(2, -amount); // 消费金额为负数
+            ps.setString(3, PaymentRecordEntity.PaymentMethod.ACCOUNT.name());
+            ps.setString(4, PaymentRecordEntity.PaymentStatus.SUCCESS.name());
+            ps.setTimestamp(5, now);
+            ps.setTimestamp(6, now);
+        });
+
+        // 每个课次按各自的支付记录记账（课程费由平台代收），退款和结算都能对应到原扣款分录
+        long amountCents = MoneyUtil.toCents(amount);
+        for (Long paymentId : paymentIds) {
+            ledgerService.transfer(LedgerEntryEntity.EntryType.COURSE_PAYMENT, paymentId,
+                    LedgerEntryEntity.AccountType.STUDENT, studentId,
+                    LedgerEntryEntity.AccountType.ESCROW, LedgerService.PLATFORM_ACCOUNT_ID, amountCents);
+        }
+
+        // 4. 批量写入预约记录
+        List<Long> appointmentIds = batchInsert(INSERT_APPOINTMENT_SQL, occurrences.size(), (ps, i) -> {
+            SeriesOccurrenceDTO occurrence = occurrences.get(i);
+            ps.setLong(1, coach.getId());
+            ps.setLong(2, studentId);
+            ps.setLong(3, schoolId);
+            ps.setTimestamp(4, Timestamp.valueOf(occurrence.getStartTime()));
+            ps.setTimestamp(5, Timestamp.valueOf(occurrence.getEndTime()));
+            ps.setLong(6, occurrence.getTableId());
+            ps.setString(7, CourseAppointmentEntity.AppointmentStatus.PENDING_CONFIRM.name());
+            ps.setDouble(8, amount);
+            ps.setLong(9, paymentIds.get(i));
+        });
+
+        // 5. 事务提交后同步球台占用索引
+        for (int i = 0; i < occurrences.size(); i++) {
+            SeriesOccurrenceDTO occurrence = occurrences.get(i);
+            occurrence.setAppointmentId(appointmentIds.get(i));
+            CourseAppointmentEntity appointment = new CourseAppointmentEntity();
+            appointment.setId(appointmentIds.get(i));
+            appointment.setSchoolId(schoolId);
+            appointment.setTableId(occurrence.getTableId());
+            appointment.setStartTime(occurrence.getStartTime());
+            appointment.setEndTime(occurrence.getEndTime());
+            tableOccupancyIndex.onBooked(appointment);
+        }
+        return Result.success(occurrences);
+    }
+
+    // 批量插入并按顺序返回自增ID
+    private List<Long> batchInsert(String sql, int size, RowSetter setter) {
+        GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(con -> con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        setter.set(ps, i);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return size;
+                    }
+                }, keyHolder);
+        List<Long> ids = new ArrayList<>();
+        for (Map<String, Object> keys : keyHolder.getKeyList()) {
+            ids.add(((Number) keys.values().iterator().next()).longValue());
+        }
+        return ids;
+    }
+
+    @FunctionalInterface
+    private interface RowSetter {
+        void set(PreparedStatement ps, int i) throws SQLException;
+    }
+}
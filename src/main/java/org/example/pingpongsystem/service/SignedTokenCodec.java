@@ -0,0 +1,153 @@
+package org.example.pingpongsystem.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 签名token编解码：token自带角色和userId，用HMAC-SHA256签名，校验时不需要查数据库
+ * 格式：v1.{base64url(role|userId|签发时间|过期时间|jti)}.{base64url(签名)}
+ */
+@Component
+public class SignedTokenCodec {
+    private static final String PREFIX = "v1.";
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final long ttlSeconds;
+    private final ThreadLocal<Mac> macHolder;
+    private final SecureRandom random = new SecureRandom();
+
+    // 已登出token的jti -> 原过期时间（毫秒），过期后即可从集合中清除
+    // 登出记录持久化在revoked_token_entity（见TokenRevocationService），这里是各节点的本地缓存
+    private final Map<String, Long> revokedTokens = new ConcurrentHashMap<>();
+
+    public SignedTokenCodec(@Value("${token.signed.secret:}") String secret,
+                            @Value("${token.signed.ttl-minutes:720}") long ttlMinutes) {
+        this.ttlSeconds = ttlMinutes * 60;
+        byte[] key;
+        if (secret == null || secret.isBlank()) {
+            // 未配置密钥时随机生成：重启后旧token全部失效，多节点部署必须配置相同密钥
+            key = new byte[32];
+            random.nextBytes(key);
+            System.err.println("未配置token.signed.secret，已使用随机密钥（仅适用于单节点）");
+        } else {
+            key = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        SecretKeySpec keySpec = new SecretKeySpec(key, ALGORITHM);
+        // Mac实例非线程安全，每个线程持有一份
+        this.macHolder = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(keySpec);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("初始化token签名失败", e);
+            }
+        });
+    }
+
+    // 是否为签名token（UUID token不含"."）
+    public boolean isSignedToken(String token) {
+        return token != null && token.startsWith(PREFIX);
+    }
+
+    /**
+     * 签发token
+     * @param role super_admin/admin/coach/student
+     */
+    public String issue(String role, Long userId) {
+        long issuedAt = System.currentTimeMillis() / 1000;
+        byte[] jtiBytes = new byte[9];
+        random.nextBytes(jtiBytes);
+        String jti = Base64.getUrlEncoder().withoutPadding().encodeToString(jtiBytes);
+        String payload = role + "|" + userId + "|" + issuedAt + "|" + (issuedAt + ttlSeconds) + "|" + jti;
+        String body = PREFIX + Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        return body + "." + sign(body);
+    }
+
+    /**
+     * 校验签名、过期时间和登出状态，任一不通过返回null
+     */
+    public Claims verify(String token) {
+        if (!isSignedToken(token)) {
+            return null;
+        }
+        int sigIndex = token.lastIndexOf('.');
+        if (sigIndex <= PREFIX.length()) {
+            return null;
+        }
+        String body = token.substring(0, sigIndex);
+        byte[] expected = sign(body).getBytes(StandardCharsets.US_ASCII);
+        byte[] actual = token.substring(sigIndex + 1).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, actual)) {
+            return null;
+        }
+
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(body.substring(PREFIX.length())),
+                    StandardCharsets.UTF_8).split("\\|");
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (parts.length != 5) {
+            return null;
+        }
+        long expireAt = Long.parseLong(parts[3]) * 1000;
+        if (expireAt < System.currentTimeMillis() || revokedTokens.containsKey(parts[4])) {
+            return null;
+        }
+        return new Claims(parts[0], Long.valueOf(parts[1]), expireAt, parts[4]);
+    }
+
+    // 登出：记录jti，直到token自然过期
+    public void revoke(Claims claims) {
+        revoke(claims.getJti(), claims.getExpireAt());
+    }
+
+    // 按jti登出（同步其他节点的登出记录时使用）
+    public void revoke(String jti, long expireAt) {
+        revokedTokens.put(jti, expireAt);
+    }
+
+    public int getRevokedCount() {
+        return revokedTokens.size();
+    }
+
+    // 定时清理已自然过期的登出记录，保持集合精简
+    @Scheduled(fixedDelay = 600000)
+    public void purgeExpiredRevocations() {
+        long now = System.currentTimeMillis();
+        revokedTokens.values().removeIf(expireAt -> expireAt < now);
+    }
+
+    private String sign(String body) {
+        byte[] sig = macHolder.get().doFinal(body.getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sig);
+    }
+
+    /**
+     * token中携带的身份信息
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Claims {
+        private final String role;
+        private final Long userId;
+        private final long expireAt;
+        private final String jti;
+    }
+}
@@ -133,6 +133,8 @@ public class StudentService {
 
         // 保存更新（原代码漏了save操作，补充上）
         StudentEntity updated = studentRepository.save(temp);
+        // 资料已变更，清除该学员的会话缓存
+        tokenService.evictUserSessions("student", updated.getId());
         return Result.success(updated);
 
     }
@@ -226,6 +228,7 @@ public class StudentService {
             }
             student.setAvatar(uploadResult.getData());
             studentRepository.save(student);
+            tokenService.evictUserSessions("student", studentId);
             return Result.success("头像上传成功");
         } catch (IOException e) {
             return Result.error(StatusCode.FAIL, "头像上传失败：" + e.getMessage());
@@ -2,6 +2,7 @@ package org.example.pingpongsystem.service;
 
 import jakarta.persistence.criteria.Predicate;
 import jakarta.validation.ConstraintViolationException;
+import org.example.pingpongsystem.dto.AuthPrincipal;
 import org.example.pingpongsystem.entity.*;
 import org.example.pingpongsystem.repository.*;
 import org.example.pingpongsystem.utility.FileUploadUtil;
@@ -36,6 +37,7 @@ public class SuperAdminService {
     private final StudentRepository studentRepository;
     private final ScheduleRepository scheduleRepository;
     private final CoachTeachStudentRepository coachTeachStudentRepository;
+    private final TableOccupancyIndex tableOccupancyIndex;
     public SuperAdminService(SuperAdminRepository superAdminRepository,
                              SchoolRepository schoolRepository,
                              TableRepository tableRepository,
@@ -45,7 +47,8 @@ public class SuperAdminService {
                              CoachAccountService coachAccountService,
                              StudentRepository studentRepository,
                              ScheduleRepository scheduleRepository,
-                             CoachTeachStudentRepository coachTeachStudentRepository) {
+                             CoachTeachStudentRepository coachTeachStudentRepository,
+                             TableOccupancyIndex tableOccupancyIndex) {
         this.superAdminRepository = superAdminRepository;
         this.schoolRepository = schoolRepository;
         this.tableRepository = tableRepository;
@@ -56,6 +59,7 @@ public class SuperAdminService {
         this.studentRepository = studentRepository;
         this.scheduleRepository = scheduleRepository;
         this.coachTeachStudentRepository = coachTeachStudentRepository;
+        this.tableOccupancyIndex = tableOccupancyIndex;
     }
 
     public Result<AdminEntity> createAdmin(AdminEntity admin) {
@@ -173,6 +177,7 @@ public class SuperAdminService {
                 tableEntity.setSchoolId(school.getId());
                 tableRepository.save(tableEntity);
             }
+            tableOccupancyIndex.invalidateSchool(school.getId());
 
             return Result.success(school);
         } catch (OptimisticLockingFailureException e) {
@@ -235,6 +240,8 @@ public class SuperAdminService {
                 tableEntity.setSchoolId(school.getId());
                 tableRepository.save(tableEntity);
             }
+            // 球台已重建，占用索引需重新加载
+            tableOccupancyIndex.invalidateSchool(school.getId());
 
             temp.setTable_num(school.getTable_num());
         }
@@ -274,6 +281,7 @@ public class SuperAdminService {
             // 删除关联的球台
             List<TableEntity> tables = tableRepository.findAllBySchoolId(id);
             tableRepository.deleteAll(tables);
+            tableOccupancyIndex.invalidateSchool(id);
 
             // 删除学校
             schoolRepository.deleteById(id);
@@ -342,6 +350,7 @@ public class SuperAdminService {
             }
             superAdmin.setAvatar(uploadResult.getData());
             superAdminRepository.save(superAdmin);
+            tokenService.evictUserSessions("super_admin", superAdminId);
             return Result.success("头像上传成功");
         } catch (IOException e) {
             return Result.error(StatusCode.FAIL, "头像上传失败：" + e.getMessage());
@@ -392,6 +401,8 @@ public class SuperAdminService {
 
             // 保存更新
             SuperAdminEntity updated = superAdminRepository.save(superAdmin);
+            // 资料已变更，清除该超级管理员的会话缓存
+            tokenService.evictUserSessions("super_admin", updated.getId());
             return Result.success(updated);
 
         } catch (OptimisticLockingFailureException e) {
@@ -406,18 +417,13 @@ public class SuperAdminService {
      * 超级管理员分页查询所有学生（支持校区和姓名筛选）
      */
     public Result<Page<StudentEntity>> getAllStudentsWithPage(
-            String token,
+            AuthPrincipal principal,
             Long schoolId,
             String name,
             Integer pageNum,
             Integer pageSize) {
-        // 1. 验证token和超级管理员权限
-        Result<InfoAns> infoResult = tokenService.getInfo(token);
-        if (!infoResult.isSuccess()) {
-            return Result.error(StatusCode.FAIL, "令牌无效：" + infoResult.getMessage());
-        }
-        InfoAns superAdminInfo = infoResult.getData();
-        if (!"super_admin".equals(superAdminInfo.getRole())) {
+        // 1. 验证超级管理员权限
+        if (!principal.isSuperAdmin()) {
             return Result.error(StatusCode.FAIL, "权限不足，非超级管理员");
         }
 
@@ -451,19 +457,14 @@ public class SuperAdminService {
      * 超级管理员分页查询所有已认证教练（支持多条件筛选）
      */
     public Result<Page<CoachEntity>> getAllCertifiedCoachesWithPage(
-            String token,
+            AuthPrincipal principal,
             Long schoolId,
             String name,
             Integer level,
             Integer pageNum,
             Integer pageSize) {
-        // 1. 验证token和超级管理员权限
-        Result<InfoAns> infoResult = tokenService.getInfo(token);
-        if (!infoResult.isSuccess()) {
-            return Result.error(StatusCode.FAIL, "令牌无效：" + infoResult.getMessage());
-        }
-        InfoAns superAdminInfo = infoResult.getData();
-        if (!"super_admin".equals(superAdminInfo.getRole())) {
+        // 1. 验证超级管理员权限
+        if (!principal.isSuperAdmin()) {
             return Result.error(StatusCode.FAIL, "权限不足，非超级管理员");
         }
 
@@ -505,14 +506,9 @@ public class SuperAdminService {
      * 超级管理员更新学生信息（无校区权限限制）
      */
     @Transactional
-    public Result<StudentEntity> updateStudent(String token, StudentEntity updatedStudent) {
+    public Result<StudentEntity> updateStudent(AuthPrincipal principal, StudentEntity updatedStudent) {
         // 1. 验证超级管理员权限
-        Result<InfoAns> infoResult = tokenService.getInfo(token);
-        if (!infoResult.isSuccess()) {
-            return Result.error(StatusCode.FAIL, "令牌无效：" + infoResult.getMessage());
-        }
-        InfoAns superAdminInfo = infoResult.getData();
-        if (!"super_admin".equals(superAdminInfo.getRole())) {
+        if (!principal.isSuperAdmin()) {
             return Result.error(StatusCode.FAIL, "权限不足，非超级管理员");
         }
 
@@ -555,6 +551,7 @@ public class SuperAdminService {
 
         // 4. 保存更新
         StudentEntity savedStudent = studentRepository.save(student);
+        tokenService.evictUserSessions("student", savedStudent.getId());
         return Result.success(savedStudent);
     }
 
@@ -562,14 +559,9 @@ public class SuperAdminService {
      * 超级管理员更新已认证教练信息（无校区权限限制）
      */
     @Transactional
-    public Result<CoachEntity> updateCertifiedCoach(String token, CoachEntity updatedCoach) {
+    public Result<CoachEntity> updateCertifiedCoach(AuthPrincipal principal, CoachEntity updatedCoach) {
         // 1. 验证超级管理员权限
-        Result<InfoAns> infoResult = tokenService.getInfo(token);
-        if (!infoResult.isSuccess()) {
-            return Result.error(StatusCode.FAIL, "令牌无效：" + infoResult.getMessage());
-        }
-        InfoAns superAdminInfo = infoResult.getData();
-        if (!"super_admin".equals(superAdminInfo.getRole())) {
+        if (!principal.isSuperAdmin()) {
             return Result.error(StatusCode.FAIL, "权限不足，非超级管理员");
         }
 
@@ -627,6 +619,7 @@ public class SuperAdminService {
 
         // 4. 保存更新
         CoachEntity savedCoach = coachRepository.save(coach);
+        tokenService.evictUserSessions("coach", savedCoach.getId());
         return Result.success(savedCoach);
     }
 }
@@ -5,6 +5,9 @@ import org.example.pingpongsystem.entity.SystemActivation;
 import org.example.pingpongsystem.repository.SystemActivationRepository;
 import org.example.pingpongsystem.utility.Result;
 import org.example.pingpongsystem.utility.StatusCode;
+import org.example.pingpongsystem.utility.TransactionHooks;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -12,22 +15,58 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 public class SystemActivationService {
     private final SystemActivationRepository activationRepository;
     private final PaymentService paymentService;
 
+    // 内存中的激活状态：拦截器每个请求只读这个字段，不查数据库
+    // 为null表示尚未加载；多节点部署时由定时刷新同步其他节点的变更
+    // 刷新只在读库期间状态未被替换时写回（比较并替换），不会用读库之前的旧数据覆盖本节点激活后写入的新状态
+    private final AtomicReference<ActivationState> activationState = new AtomicReference<>();
+
     public SystemActivationService(SystemActivationRepository activationRepository, PaymentService paymentService) {
         this.activationRepository = activationRepository;
         this.paymentService = paymentService;
     }
 
-    // 检查系统是否已激活（所有用户访问前需验证）
+    // 检查系统是否已激活（所有用户访问前需验证）：读取内存状态，到达validTo后自动视为未激活
     public boolean isSystemActivated() {
-        return activationRepository.findTopByIsActiveTrue()
-                .map(activation -> LocalDateTime.now().isBefore(activation.getValidTo()))
-                .orElse(false);
+        ActivationState state = activationState.get();
+        if (state == null) {
+            state = refreshActivationState();
+        }
+        return state.validTo != null && LocalDateTime.now().isBefore(state.validTo);
+    }
+
+    /**
+     * 从数据库重新加载激活状态
+     * 定时执行，其他节点激活/续期后，本节点最多延迟一个刷新间隔生效
+     */
+    @Scheduled(fixedDelayString = "${activation.refresh-interval-ms:30000}")
+    public void scheduledRefresh() {
+        refreshActivationState();
+    }
+
+    private ActivationState refreshActivationState() {
+        // 读库之前的状态：读库期间若被激活提交替换，本次读到的可能是激活之前的数据，不写回
+        ActivationState before = activationState.get();
+        try {
+            ActivationState state = new ActivationState(activationRepository.findTopByIsActiveTrue()
+                    .map(SystemActivation::getValidTo)
+                    .orElse(null));
+            if (activationState.compareAndSet(before, state)) {
+                return state;
+            }
+            return activationState.get();
+        } catch (DataAccessException e) {
+            // 数据库暂不可用时沿用上一次的状态
+            System.err.println("刷新系统激活状态失败：" + e.getMessage());
+            ActivationState state = activationState.get();
+            return state != null ? state : new ActivationState(null);
+        }
     }
 
     // 超级管理员发起服务费支付（模拟，金额500元/年）
@@ -65,6 +104,8 @@ public class SystemActivationService {
         activation.setSuperAdminId(superAdminId);
 
         SystemActivation saved = activationRepository.save(activation);
+        // 5. 事务提交后立即更新本节点的内存状态
+        TransactionHooks.afterCommit(() -> activationState.set(new ActivationState(validTo)));
         return Result.success(saved);
     }
 
@@ -118,4 +159,13 @@ public class SystemActivationService {
     public Optional<SystemActivation> getCurrentActiveActivation() {
         return activationRepository.findTopByIsActiveTrue();
     }
+
+    // 激活状态快照（不可变，整体替换；按对象身份判断刷新期间是否被替换）
+    private static class ActivationState {
+        private final LocalDateTime validTo; // 当前有效激活的到期时间，无有效激活为null
+
+        private ActivationState(LocalDateTime validTo) {
+            this.validTo = validTo;
+        }
+    }
 }
@@ -0,0 +1,212 @@
+package org.example.pingpongsystem.service;
+
+import org.example.pingpongsystem.entity.CourseAppointmentEntity;
+import org.example.pingpongsystem.entity.TableEntity;
+import org.example.pingpongsystem.repository.CourseAppointmentRepository;
+import org.example.pingpongsystem.repository.TableRepository;
+import org.example.pingpongsystem.utility.TransactionHooks;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 球台占用索引：校区 -> 球台 -> 按开始时间排序的有效预约时间段
+ * 首次访问某校区时从数据库加载，之后随本节点的预约/拒绝/取消/完成在事务提交后同步更新
+ * 数据库仍是最终依据：索引只用于快速挑选候选球台；其他节点的变更不会通知本节点，
+ * 因此索引超过ttl后重新加载，索引判断为"已占用"时先以数据库确认，避免因过期数据拒绝预约
+ */
+@Component
+public class TableOccupancyIndex {
+    // 占用球台的预约状态（已取消、已拒绝、已完成的预约不再占用）
+    public static final List<CourseAppointmentEntity.AppointmentStatus> ACTIVE_STATUSES = List.of(
+            CourseAppointmentEntity.AppointmentStatus.PENDING_CONFIRM,
+            CourseAppointmentEntity.AppointmentStatus.CONFIRMED,
+            CourseAppointmentEntity.AppointmentStatus.CANCEL_REQUESTED
+    );
+
+    private final TableRepository tableRepository;
+    private final CourseAppointmentRepository appointmentRepository;
+
+    private final long ttlMillis;
+
+    private final Map<Long, SchoolOccupancy> schools = new ConcurrentHashMap<>();
+
+    public TableOccupancyIndex(TableRepository tableRepository, CourseAppointmentRepository appointmentRepository,
+                               @Value("${table.occupancy.ttl-seconds:60}") long ttlSeconds) {
+        this.tableRepository = tableRepository;
+        this.appointmentRepository = appointmentRepository;
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    /**
+     * 查找指定时间段内空闲的球台（按球台ID从小到大），没有则返回null
+     */
+    public Long findFreeTable(Long schoolId, LocalDateTime startTime, LocalDateTime endTime) {
+        return findFreeTable(schoolId, startTime, endTime, Collections.emptySet());
+    }
+
+    // 同上，跳过excluded中的球台（已尝试过但被抢占的）
+    public Long findFreeTable(Long schoolId, LocalDateTime startTime, LocalDateTime endTime, Set<Long> excluded) {
+        SchoolOccupancy occupancy = getSchool(schoolId);
+        synchronized (occupancy) {
+            for (Map.Entry<Long, TreeSet<Interval>> entry : occupancy.tables.entrySet()) {
+                if (!excluded.contains(entry.getKey()) && isFree(entry.getValue(), startTime, endTime)) {
+                    return entry.getKey();
+                }
+            }
+        }
+        // 索引中没有空闲球台：以数据库为准确认（其他节点可能已取消、拒绝或完成了预约）
+        for (Long tableId : tableRepository.findFreeTableIds(schoolId, ACTIVE_STATUSES, startTime, endTime)) {
+            if (!excluded.contains(tableId)) {
+                invalidateSchool(schoolId); // 索引已过期，下次访问重新加载
+                return tableId;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 球台是否属于该校区且在指定时间段空闲
+     */
+    public boolean isTableFree(Long schoolId, Long tableId, LocalDateTime startTime, LocalDateTime endTime) {
+        SchoolOccupancy occupancy = getSchool(schoolId);
+        synchronized (occupancy) {
+            TreeSet<Interval> intervals = occupancy.tables.get(tableId);
+            if (intervals == null) {
+                return false; // 不属于该校区
+            }
+            if (isFree(intervals, startTime, endTime)) {
+                return true;
+            }
+        }
+        // 索引显示已占用：以数据库为准确认
+        if (appointmentRepository.existsByTableIdAndStatusInAndStartTimeLessThanAndEndTimeGreaterThan(
+                tableId, ACTIVE_STATUSES, endTime, startTime)) {
+            return false;
+        }
+        invalidateSchool(schoolId); // 索引已过期，下次访问重新加载
+        return true;
+    }
+
+    // 新预约：事务提交后加入索引
+    public void onBooked(CourseAppointmentEntity appointment) {
+        Interval interval = new Interval(appointment.getId(), appointment.getStartTime(), appointment.getEndTime());
+        Long schoolId = appointment.getSchoolId();
+        Long tableId = appointment.getTableId();
+        TransactionHooks.afterCommit(() -> {
+            SchoolOccupancy occupancy = schools.get(schoolId);
+            if (occupancy == null) {
+                return; // 未加载的校区，下次访问时从数据库加载
+            }
+            synchronized (occupancy) {
+                TreeSet<Interval> intervals = occupancy.tables.get(tableId);
+                if (intervals != null) {
+                    intervals.add(interval);
+                }
+            }
+        });
+    }
+
+    // 预约被拒绝、取消或已完成：事务提交后释放占用
+    public void onReleased(CourseAppointmentEntity appointment) {
+        Interval interval = new Interval(appointment.getId(), appointment.getStartTime(), appointment.getEndTime());
+        Long schoolId = appointment.getSchoolId();
+        Long tableId = appointment.getTableId();
+        TransactionHooks.afterCommit(() -> {
+            SchoolOccupancy occupancy = schools.get(schoolId);
+            if (occupancy == null) {
+                return;
+            }
+            synchronized (occupancy) {
+                TreeSet<Interval> intervals = occupancy.tables.get(tableId);
+                if (intervals != null) {
+                    intervals.remove(interval);
+                }
+            }
+        });
+    }
+
+    // 校区球台增删或索引与数据库不一致时调用，下次访问重新加载
+    public void invalidateSchool(Long schoolId) {
+        schools.remove(schoolId);
+        TransactionHooks.afterCommit(() -> schools.remove(schoolId));
+    }
+
+    // 未加载或加载超过ttl时从数据库（重新）加载
+    // 加载在map锁之外执行，数据库查询不会阻塞同一哈希桶内其他校区的访问；
+    // 并发加载时只保留先写入的结果（索引偶尔落后由调用方以数据库为准确认）
+    private SchoolOccupancy getSchool(Long schoolId) {
+        SchoolOccupancy current = schools.get(schoolId);
+        if (current != null && System.currentTimeMillis() - current.loadedAt <= ttlMillis) {
+            return current;
+        }
+        SchoolOccupancy loaded = load(schoolId);
+        if (current == null) {
+            SchoolOccupancy existing = schools.putIfAbsent(schoolId, loaded);
+            return existing != null ? existing : loaded;
+        }
+        if (schools.replace(schoolId, current, loaded)) {
+            return loaded;
+        }
+        // 其他线程已重新加载或失效，使用最新的结果
+        return schools.getOrDefault(schoolId, loaded);
+    }
+
+    // 从数据库加载校区的球台和未结束的有效预约
+    private SchoolOccupancy load(Long schoolId) {
+        SchoolOccupancy occupancy = new SchoolOccupancy();
+        for (TableEntity table : tableRepository.findAllBySchoolId(schoolId)) {
+            occupancy.tables.put(table.getId(), new TreeSet<>());
+        }
+        List<CourseAppointmentEntity> appointments = appointmentRepository
+                .findBySchoolIdAndStatusInAndEndTimeAfter(schoolId, ACTIVE_STATUSES, LocalDateTime.now());
+        for (CourseAppointmentEntity appointment : appointments) {
+            TreeSet<Interval> intervals = occupancy.tables.get(appointment.getTableId());
+            if (intervals != null) {
+                intervals.add(new Interval(appointment.getId(), appointment.getStartTime(), appointment.getEndTime()));
+            }
+        }
+        return occupancy;
+    }
+
+    /**
+     * 同一球台的有效预约互不重叠，按开始时间排序后结束时间也递增，
+     * 因此只需检查开始时间早于endTime的最后一段是否在startTime之后结束
+     */
+    private static boolean isFree(TreeSet<Interval> intervals, LocalDateTime startTime, LocalDateTime endTime) {
+        // 顺带清理已结束的时间段
+        LocalDateTime now = LocalDateTime.now();
+        while (!intervals.isEmpty() && !intervals.first().endTime.isAfter(now)) {
+            intervals.pollFirst();
+        }
+        Interval previous = intervals.lower(new Interval(Long.MIN_VALUE, endTime, endTime));
+        return previous == null || !previous.endTime.isAfter(startTime);
+    }
+
+    private static class SchoolOccupancy {
+        // 球台ID有序，保证自动分配时优先选择编号小的球台
+        private final TreeMap<Long, TreeSet<Interval>> tables = new TreeMap<>();
+        private final long loadedAt = System.currentTimeMillis();
+    }
+
+    private static class Interval implements Comparable<Interval> {
+        private final Long appointmentId;
+        private final LocalDateTime startTime;
+        private final LocalDateTime endTime;
+
+        private Interval(Long appointmentId, LocalDateTime startTime, LocalDateTime endTime) {
+            this.appointmentId = appointmentId;
+            this.startTime = startTime;
+            this.endTime = endTime;
+        }
+
+        @Override
+        public int compareTo(Interval other) {
+            int cmp = startTime.compareTo(other.startTime);
+            return cmp != 0 ? cmp : appointmentId.compareTo(other.appointmentId);
+        }
+    }
+}
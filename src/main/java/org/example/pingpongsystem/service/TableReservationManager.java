@@ -0,0 +1,108 @@
+package org.example.pingpongsystem.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 球台预约锁：按球台ID分段的本地锁，同一球台的预约在本节点内串行执行
+ * 调用方在锁内完成整个数据库事务（提交后才释放），跨节点由数据库行锁（SELECT ... FOR UPDATE）兜底
+ */
+@Component
+public class TableReservationManager {
+    private final ReentrantLock[] stripes;
+    private final long timeoutMillis;
+    // 并发冲突的最大尝试次数、退避基数（毫秒）
+    private final int maxAttempts;
+    private final long backoffMillis;
+
+    public TableReservationManager(@Value("${booking.lock.stripes:64}") int stripeCount,
+                                   @Value("${booking.lock.timeout-ms:3000}") long timeoutMillis,
+                                   @Value("${booking.retry.max-attempts:3}") int maxAttempts,
+                                   @Value("${booking.retry.backoff-ms:50}") long backoffMillis) {
+        this.stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.timeoutMillis = timeoutMillis;
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+    }
+
+    /**
+     * 持有球台所在分段的锁执行action
+     * @throws CannotAcquireLockException 等待超时或线程被中断（调用方按并发冲突重试）
+     */
+    public <T> T reserve(Long tableId, Supplier<T> action) {
+        ReentrantLock lock = stripes[stripeOf(tableId)];
+        acquire(lock);
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 同时持有多张球台的锁执行action（连续多周预约）
+     * 按分段下标从小到大加锁，避免两个请求互相等待
+     */
+    public <T> T reserveAll(Collection<Long> tableIds, Supplier<T> action) {
+        TreeSet<Integer> indexes = new TreeSet<>();
+        for (Long tableId : tableIds) {
+            indexes.add(stripeOf(tableId));
+        }
+        List<ReentrantLock> held = new ArrayList<>();
+        try {
+            for (Integer index : indexes) {
+                acquire(stripes[index]);
+                held.add(stripes[index]);
+            }
+            return action.get();
+        } finally {
+            for (int i = held.size() - 1; i >= 0; i--) {
+                held.get(i).unlock();
+            }
+        }
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    // 重试前随机退避，避免冲突的请求同时重试；线程被中断时返回false
+    public boolean backoff(int attempt) {
+        long delay = backoffMillis * attempt + ThreadLocalRandom.current().nextLong(backoffMillis + 1);
+        try {
+            Thread.sleep(delay);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private int stripeOf(Long tableId) {
+        return Math.floorMod(tableId.hashCode(), stripes.length);
+    }
+
+    private void acquire(ReentrantLock lock) {
+        try {
+            if (!lock.tryLock(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new CannotAcquireLockException("球台预约锁等待超时");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CannotAcquireLockException("等待球台预约锁时被中断", e);
+        }
+    }
+}
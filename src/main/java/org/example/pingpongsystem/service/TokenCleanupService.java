@@ -0,0 +1,99 @@
+package org.example.pingpongsystem.service;
+
+import org.example.pingpongsystem.repository.TokenRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * token表清理：定时分批删除已过期的UUID token
+ * 每批是一个独立的短事务（先按索引取一批ID，再按主键删除），不会长时间锁表
+ */
+@Service
+public class TokenCleanupService {
+    private final TokenRepository tokenRepository;
+    private final int batchSize;
+    private final long uuidTtlMinutes;
+
+    private final AtomicLong lastRemoved = new AtomicLong();
+    private final AtomicLong totalRemoved = new AtomicLong();
+    private volatile long lastRunMillis;
+
+    public TokenCleanupService(TokenRepository tokenRepository,
+                               @Value("${token.purge.batch-size:500}") int batchSize,
+                               @Value("${token.uuid.ttl-minutes:720}") long uuidTtlMinutes) {
+        this.tokenRepository = tokenRepository;
+        this.batchSize = batchSize;
+        this.uuidTtlMinutes = uuidTtlMinutes;
+    }
+
+    /**
+     * 启动时为旧版本遗留的token（无过期时间）补上过期时间，之后由定时任务正常清理
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillLegacyTokens() {
+        try {
+            LocalDateTime expireTime = LocalDateTime.now().plusMinutes(uuidTtlMinutes);
+            int updated = 0;
+            List<Long> ids;
+            do {
+                ids = tokenRepository.findIdsWithoutExpireTime(PageRequest.of(0, batchSize));
+                if (!ids.isEmpty()) {
+                    updated += tokenRepository.setExpireTime(ids, expireTime);
+                }
+            } while (ids.size() == batchSize);
+            if (updated > 0) {
+                System.out.println("已为" + updated + "个旧token补充过期时间");
+            }
+        } catch (DataAccessException e) {
+            System.err.println("补充token过期时间失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 定时清理过期token
+     * @return 本次删除的记录数
+     */
+    @Scheduled(fixedDelayString = "${token.purge.interval-ms:600000}")
+    public int purgeExpiredTokens() {
+        LocalDateTime now = LocalDateTime.now();
+        int removed = 0;
+        try {
+            List<Long> ids;
+            do {
+                // 1. 取一批过期token的ID（走expireTime索引）
+                ids = tokenRepository.findExpiredIds(now, PageRequest.of(0, batchSize));
+                // 2. 按主键批量删除（单条DELETE ... WHERE id IN (...)）
+                if (!ids.isEmpty()) {
+                    tokenRepository.deleteAllByIdInBatch(ids);
+                    removed += ids.size();
+                }
+            } while (ids.size() == batchSize);
+        } catch (DataAccessException e) {
+            System.err.println("清理过期token失败：" + e.getMessage());
+        }
+        lastRemoved.set(removed);
+        totalRemoved.addAndGet(removed);
+        lastRunMillis = System.currentTimeMillis();
+        System.out.println("过期token清理完成，本次删除" + removed + "条");
+        return removed;
+    }
+
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("lastRemoved", lastRemoved.get());
+        stats.put("totalRemoved", totalRemoved.get());
+        stats.put("lastRunMillis", lastRunMillis);
+        return stats;
+    }
+}
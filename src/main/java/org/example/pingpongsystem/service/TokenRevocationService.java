@@ -0,0 +1,100 @@
+package org.example.pingpongsystem.service;
+
+import org.example.pingpongsystem.repository.RevokedTokenRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * 签名token登出：登出记录写入revoked_token_entity，SignedTokenCodec中的登出集合作为本地缓存
+ * 启动时加载未过期的登出记录，之后定时增量同步其他节点的登出；校验token时只查内存，不访问数据库
+ */
+@Service
+public class TokenRevocationService {
+    // 增量同步时回看的时长：覆盖节点间的时钟偏差和登记事务提交的延迟（重复读到的记录在内存中去重）
+    private static final long SYNC_OVERLAP_SECONDS = 60;
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final SignedTokenCodec signedTokenCodec;
+
+    private volatile LocalDateTime lastSyncTime;
+
+    public TokenRevocationService(RevokedTokenRepository revokedTokenRepository, SignedTokenCodec signedTokenCodec) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.signedTokenCodec = signedTokenCodec;
+    }
+
+    /**
+     * 登出签名token：在调用方事务中登记，同时加入本节点的登出集合
+     */
+    public void revoke(SignedTokenCodec.Claims claims) {
+        revokedTokenRepository.insertIgnore(claims.getJti(), toLocalDateTime(claims.getExpireAt()), LocalDateTime.now());
+        signedTokenCodec.revoke(claims);
+    }
+
+    // 启动时加载全部未过期的登出记录
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadRevocations() {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            int loaded = apply(revokedTokenRepository.findActive(now));
+            lastSyncTime = now;
+            if (loaded > 0) {
+                System.out.println("已加载" + loaded + "条签名token登出记录");
+            }
+        } catch (DataAccessException e) {
+            System.err.println("加载签名token登出记录失败：" + e.getMessage());
+        }
+    }
+
+    /**
+     * 定时同步其他节点登记的登出记录（默认每5秒），登出在各节点生效的最大延迟即为同步间隔
+     */
+    @Scheduled(fixedDelayString = "${token.signed.revocation-sync-ms:5000}")
+    public void syncRevocations() {
+        LocalDateTime since = lastSyncTime;
+        if (since == null) {
+            loadRevocations(); // 启动加载失败时重试全量加载
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            apply(revokedTokenRepository.findActiveSince(since.minusSeconds(SYNC_OVERLAP_SECONDS), now));
+            lastSyncTime = now;
+        } catch (DataAccessException e) {
+            System.err.println("同步签名token登出记录失败：" + e.getMessage());
+        }
+    }
+
+    // 定时删除已自然过期的登出记录（各节点都可执行，重复删除无影响）
+    @Scheduled(fixedDelayString = "${token.purge.interval-ms:600000}")
+    public void purgeExpiredRevocations() {
+        try {
+            int removed = revokedTokenRepository.deleteExpired(LocalDateTime.now());
+            if (removed > 0) {
+                System.out.println("已清理" + removed + "条过期的签名token登出记录");
+            }
+        } catch (DataAccessException e) {
+            System.err.println("清理签名token登出记录失败：" + e.getMessage());
+        }
+    }
+
+    private int apply(List<Object[]> rows) {
+        for (Object[] row : rows) {
+            LocalDateTime expireTime = (LocalDateTime) row[1];
+            signedTokenCodec.revoke((String) row[0], expireTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
+        return rows.size();
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+}
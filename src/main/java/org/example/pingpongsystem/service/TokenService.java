@@ -1,16 +1,20 @@
 package org.example.pingpongsystem.service;
 
 import jakarta.validation.ConstraintViolationException;
+import org.example.pingpongsystem.dto.AuthPrincipal;
 import org.example.pingpongsystem.entity.*;
 import org.example.pingpongsystem.repository.*;
 import org.example.pingpongsystem.utility.Result;
 import org.example.pingpongsystem.utility.StatusCode;
 import org.example.pingpongsystem.utility.interfaces.InfoAns;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -21,17 +25,66 @@ public class TokenService {
     private final AdminRepository adminRepository;
     private final CoachRepository coachRepository;
     private final StudentRepository studentRepository;
+    private final TokenSessionCache tokenSessionCache;
+    private final SignedTokenCodec signedTokenCodec;
+    private final TokenRevocationService tokenRevocationService;
+    // token模式：uuid（token表存储，默认）/ signed（签名token，不落库）
+    private final String tokenMode;
+    // UUID token闲置过期时间、续期写库的最小间隔（分钟）
+    private final long uuidTtlMinutes;
+    private final long refreshMinutes;
 
-    public TokenService(TokenRepository tokenRepository, SuperAdminRepository superAdminRepository, AdminRepository adminRepository, CoachRepository coachRepository, StudentRepository studentRepository) {
+    public TokenService(TokenRepository tokenRepository, SuperAdminRepository superAdminRepository, AdminRepository adminRepository, CoachRepository coachRepository, StudentRepository studentRepository, TokenSessionCache tokenSessionCache,
+                        SignedTokenCodec signedTokenCodec, TokenRevocationService tokenRevocationService,
+                        @Value("${token.mode:uuid}") String tokenMode,
+                        @Value("${token.uuid.ttl-minutes:720}") long uuidTtlMinutes,
+                        @Value("${token.uuid.refresh-minutes:10}") long refreshMinutes) {
         this.tokenRepository = tokenRepository;
         this.superAdminRepository = superAdminRepository;
         this.adminRepository = adminRepository;
         this.coachRepository = coachRepository;
         this.studentRepository = studentRepository;
+        this.tokenSessionCache = tokenSessionCache;
+        this.signedTokenCodec = signedTokenCodec;
+        this.tokenRevocationService = tokenRevocationService;
+        this.tokenMode = tokenMode;
+        this.uuidTtlMinutes = uuidTtlMinutes;
+        this.refreshMinutes = refreshMinutes;
     }
 
     public Result<InfoAns> getInfo(String token) {
-        TokenEntity tokenEntity = tokenRepository.findByToken(token);
+        // 先查会话缓存，命中时不访问数据库
+        InfoAns cached = tokenSessionCache.get(token);
+        if (cached != null) {
+            // 签名token仍在本地验签：其他节点登出（同步到本节点的登出集合）或过期后立即失效
+            if (signedTokenCodec.isSignedToken(token) && signedTokenCodec.verify(token) == null) {
+                tokenSessionCache.invalidate(token);
+                return Result.error(StatusCode.FAIL, "token不存在");
+            }
+            return Result.success(cached);
+        }
+        Result<InfoAns> result = loadInfo(token);
+        if (result.isSuccess()) {
+            tokenSessionCache.put(token, result.getData());
+        }
+        return result;
+    }
+
+    /**
+     * 解析请求的登录身份（角色、userId、校区），供AuthPrincipalInterceptor每个请求调用一次
+     */
+    public Result<AuthPrincipal> resolvePrincipal(String token) {
+        Result<InfoAns> infoResult = getInfo(token);
+        if (!infoResult.isSuccess()) {
+            return Result.error(infoResult.getCode(), infoResult.getMessage());
+        }
+        InfoAns info = infoResult.getData();
+        return Result.success(new AuthPrincipal(info.getRole(), info.getUserId(), info.getSchoolId()));
+    }
+
+    // 从token表和对应角色表解析用户信息
+    private Result<InfoAns> loadInfo(String token) {
+        TokenEntity tokenEntity = resolveTokenEntity(token);
         if (tokenEntity != null) {
             // 1. 超级管理员查询：使用userId
             if (tokenEntity.isSuperAdmin()) {
@@ -114,7 +167,55 @@ public class TokenService {
             return Result.error(StatusCode.FAIL, "token不存在");
         }
     }
+
+    /**
+     * 解析token对应的角色和userId：签名token只做本地验签，UUID token查询token表
+     * 两种token始终都能识别，切换token.mode时已登录用户不受影响
+     */
+    private TokenEntity resolveTokenEntity(String token) {
+        if (!signedTokenCodec.isSignedToken(token)) {
+            return resolveUuidToken(token);
+        }
+        SignedTokenCodec.Claims claims = signedTokenCodec.verify(token);
+        if (claims == null) {
+            return null;
+        }
+        // 仅在内存中组装，不保存
+        TokenEntity tokenEntity = new TokenEntity();
+        tokenEntity.setToken(token);
+        tokenEntity.setSuperAdmin("super_admin".equals(claims.getRole()));
+        tokenEntity.setAdmin("admin".equals(claims.getRole()));
+        tokenEntity.setCoach("coach".equals(claims.getRole()));
+        tokenEntity.setStudent("student".equals(claims.getRole()));
+        tokenEntity.setUserId(claims.getUserId());
+        return tokenEntity;
+    }
+
+    /**
+     * UUID token：已过期视为不存在（记录由定时任务清理）；未过期则滑动续期
+     * 距上次续期不足refreshMinutes时不写库，避免每个请求都产生一次更新
+     */
+    private TokenEntity resolveUuidToken(String token) {
+        TokenEntity tokenEntity = tokenRepository.findByToken(token);
+        if (tokenEntity == null) {
+            return null;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (tokenEntity.getExpireTime() != null && tokenEntity.getExpireTime().isBefore(now)) {
+            return null;
+        }
+        if (tokenEntity.getLastAccessTime() == null
+                || tokenEntity.getLastAccessTime().plusMinutes(refreshMinutes).isBefore(now)) {
+            tokenRepository.touch(tokenEntity.getId(), now.plusMinutes(uuidTtlMinutes), now);
+        }
+        return tokenEntity;
+    }
+
     public Result<String> createToken(boolean isSuperAdmin, boolean isAdmin, boolean isCoach, boolean isStudent, Long userId) {
+        if ("signed".equals(tokenMode)) {
+            String role = isSuperAdmin ? "super_admin" : isAdmin ? "admin" : isCoach ? "coach" : "student";
+            return Result.success(signedTokenCodec.issue(role, userId));
+        }
         try {
             TokenEntity tokenEntity = new TokenEntity();
             tokenEntity.setToken(UUID.randomUUID().toString());
@@ -123,6 +224,9 @@ public class TokenService {
             tokenEntity.setCoach(isCoach);
             tokenEntity.setStudent(isStudent);
             tokenEntity.setUserId(userId);
+            LocalDateTime now = LocalDateTime.now();
+            tokenEntity.setLastAccessTime(now);
+            tokenEntity.setExpireTime(now.plusMinutes(uuidTtlMinutes));
             tokenRepository.save(tokenEntity);
             return Result.success(tokenEntity.getToken());
         } catch (OptimisticLockingFailureException e) {
@@ -142,16 +246,41 @@ public class TokenService {
         try {
             // 先查询token是否存在
             System.out.println(token);
+            // 签名token没有token表记录，登记到登出表（各节点同步）
+            if (signedTokenCodec.isSignedToken(token)) {
+                SignedTokenCodec.Claims claims = signedTokenCodec.verify(token);
+                if (claims == null) {
+                    return Result.error(StatusCode.FAIL, "token不存在");
+                }
+                tokenRevocationService.revoke(claims);
+                tokenSessionCache.invalidate(token);
+                return Result.success("success");
+            }
             TokenEntity tokenEntity = tokenRepository.findByToken(token);
             if (tokenEntity == null) {
                 return Result.error(StatusCode.FAIL, "token不存在");
             }
-            // 删除token记录
+            // 删除token记录，并清除会话缓存
             tokenRepository.deleteByToken(token);
+            tokenSessionCache.invalidate(token);
             return Result.success("success"); // 与前端mock返回格式一致
         } catch (DataAccessException e) {
             System.err.println("登出失败：" + e.getMessage());
             return Result.error(StatusCode.FAIL, "登出失败");
         }
     }
+
+    /**
+     * 用户资料变更后清除其会话缓存，下次getInfo重新从数据库加载
+     * @param role super_admin/admin/coach/student
+     */
+    public void evictUserSessions(String role, Long userId) {
+        tokenSessionCache.invalidateUser(role, userId);
+    }
+
+    public Map<String, Long> getSessionCacheStats() {
+        Map<String, Long> stats = tokenSessionCache.stats();
+        stats.put("revokedSignedTokens", (long) signedTokenCodec.getRevokedCount());
+        return stats;
+    }
 }
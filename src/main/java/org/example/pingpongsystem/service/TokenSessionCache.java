@@ -0,0 +1,175 @@
+package org.example.pingpongsystem.service;
+
+import org.example.pingpongsystem.utility.TransactionHooks;
+import org.example.pingpongsystem.utility.interfaces.InfoAns;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * token会话缓存：token -> 已解析的用户信息（角色、userId、schoolId等）
+ * 命中时getInfo无需再查询token表和角色表；容量有上限（按写入顺序淘汰），条目超过TTL后失效
+ */
+@Component
+public class TokenSessionCache {
+    private final int maxSize;
+    private final long ttlMillis;
+
+    // 按写入顺序排列，读操作不改变顺序，因此读可以并发
+    private final LinkedHashMap<String, CachedSession> sessions = new LinkedHashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public TokenSessionCache(@Value("${token.session-cache.max-size:10000}") int maxSize,
+                             @Value("${token.session-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    /**
+     * 查询缓存，未命中或已过期返回null（返回副本，调用方修改不会影响缓存）
+     */
+    public InfoAns get(String token) {
+        if (token == null) {
+            return null;
+        }
+        CachedSession session;
+        lock.readLock().lock();
+        try {
+            session = sessions.get(token);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (session == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        if (session.expireAt < System.currentTimeMillis()) {
+            // 过期条目：移除并计为一次淘汰
+            lock.writeLock().lock();
+            try {
+                if (sessions.remove(token, session)) {
+                    evictionCount.incrementAndGet();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return copyOf(session.info);
+    }
+
+    public void put(String token, InfoAns info) {
+        CachedSession session = new CachedSession(copyOf(info), System.currentTimeMillis() + ttlMillis);
+        lock.writeLock().lock();
+        try {
+            // 先删后插，保证刷新后的条目排在队尾
+            sessions.remove(token);
+            sessions.put(token, session);
+            // 超出容量时从最早写入的条目开始淘汰
+            Iterator<CachedSession> it = sessions.values().iterator();
+            while (sessions.size() > maxSize && it.hasNext()) {
+                it.next();
+                it.remove();
+                evictionCount.incrementAndGet();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 使单个token失效（登出时调用），事务提交后再清一次，防止提交前被并发请求回填
+     */
+    public void invalidate(String token) {
+        removeToken(token);
+        TransactionHooks.afterCommit(() -> removeToken(token));
+    }
+
+    /**
+     * 使某个用户的所有会话失效（资料修改后调用）
+     * @param role 与InfoAns.role一致：super_admin/admin/coach/student
+     */
+    public void invalidateUser(String role, Long userId) {
+        if (role == null || userId == null) {
+            return;
+        }
+        removeUser(role, userId);
+        TransactionHooks.afterCommit(() -> removeUser(role, userId));
+    }
+
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            stats.put("size", (long) sessions.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        stats.put("maxSize", (long) maxSize);
+        stats.put("hits", hitCount.get());
+        stats.put("misses", missCount.get());
+        stats.put("evictions", evictionCount.get());
+        return stats;
+    }
+
+    private void removeToken(String token) {
+        if (token == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            sessions.remove(token);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeUser(String role, Long userId) {
+        lock.writeLock().lock();
+        try {
+            sessions.values().removeIf(session ->
+                    role.equals(session.info.getRole()) && userId.equals(session.info.getUserId()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static InfoAns copyOf(InfoAns src) {
+        InfoAns copy = new InfoAns();
+        copy.setUsername(src.getUsername());
+        copy.setPassword(src.getPassword());
+        copy.setAge(src.getAge());
+        copy.setMale(src.isMale());
+        copy.setPhone(src.getPhone());
+        copy.setEmail(src.getEmail());
+        copy.setSchoolId(src.getSchoolId());
+        copy.setRole(src.getRole());
+        copy.setUserId(src.getUserId());
+        copy.setAvatar(src.getAvatar());
+        copy.setPhotoPath(src.getPhotoPath());
+        copy.setDescription(src.getDescription());
+        copy.setName(src.getName());
+        return copy;
+    }
+
+    private static class CachedSession {
+        private final InfoAns info;
+        private final long expireAt;
+
+        private CachedSession(InfoAns info, long expireAt) {
+            this.info = info;
+            this.expireAt = expireAt;
+        }
+    }
+}
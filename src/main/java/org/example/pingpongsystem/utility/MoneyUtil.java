@@ -0,0 +1,20 @@
+package org.example.pingpongsystem.utility;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * 金额换算：余额的增减统一用整数分计算，接口仍以元（两位小数）展示
+ */
+public class MoneyUtil {
+
+    // 元 -> 分（四舍五入到分，避免0.1 + 0.2之类的浮点误差）
+    public static long toCents(double yuan) {
+        return BigDecimal.valueOf(yuan).setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+    }
+
+    // 分 -> 元
+    public static double toYuan(long cents) {
+        return BigDecimal.valueOf(cents).movePointLeft(2).doubleValue();
+    }
+}
@@ -0,0 +1,260 @@
+package org.example.pingpongsystem.service;
+
+import org.example.pingpongsystem.entity.*;
+import org.example.pingpongsystem.repository.*;
+import org.example.pingpongsystem.utility.Result;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 预约并发压测：大量请求同时抢同一时间段，校验不会出现同一球台或同一教练时间段重叠的预约，余额扣减不丢失
+ * 每个球台对应一位教练，该教练的学员同时预约这张球台；每张球台（也就是每位教练）只能有一个预约成功
+ * 同一教练的学员同时预约不同球台的同一时段时，教练也只能有一个预约成功
+ */
+@SpringBootTest
+class CourseBookingConcurrencyTest {
+	private static final int TABLES = 2;
+	private static final int STUDENTS_PER_COACH = 6;
+	private static final double INITIAL_BALANCE = 10000.0;
+
+	@Autowired
+	private CourseAppointmentService appointmentService;
+	@Autowired
+	private CourseAppointmentRepository appointmentRepository;
+	@Autowired
+	private TableRepository tableRepository;
+	@Autowired
+	private CoachRepository coachRepository;
+	@Autowired
+	private StudentRepository studentRepository;
+	@Autowired
+	private StudentAccountRepository studentAccountRepository;
+	@Autowired
+	private CoachTeachStudentRepository relationRepository;
+	@Autowired
+	private PaymentRecordRepository paymentRecordRepository;
+	@Autowired
+	private NamedParameterJdbcTemplate jdbcTemplate;
+
+	// 使用不存在的校区ID，避免影响已有数据
+	private final Long schoolId = 900000000L + new Random().nextInt(1000000);
+	private final List<TableEntity> tables = new ArrayList<>();
+	// 第i位教练对应第i张球台
+	private final List<CoachEntity> coaches = new ArrayList<>();
+	// 按教练顺序排列，每位教练STUDENTS_PER_COACH名学员
+	private final List<StudentEntity> students = new ArrayList<>();
+
+	@BeforeEach
+	void setUp() {
+		for (int i = 0; i < TABLES; i++) {
+			TableEntity table = new TableEntity();
+			table.setSchoolId(schoolId);
+			tables.add(tableRepository.save(table));
+
+			CoachEntity coach = new CoachEntity();
+			coach.setUsername("stress_coach_" + schoolId + "_" + i);
+			coach.setPassword("123456");
+			coach.setName("压测教练" + i);
+			coach.setSchoolId(schoolId);
+			coach.setPhone("13800000000");
+			coach.setPhotoPath("none");
+			coach.setDescription("并发压测");
+			coach.setLevel(10);
+			coach.setCertified(true);
+			coach = coachRepository.save(coach);
+			coaches.add(coach);
+
+			for (int j = 0; j < STUDENTS_PER_COACH; j++) {
+				StudentEntity student = new StudentEntity();
+				student.setUsername("stress_student_" + schoolId + "_" + i + "_" + j);
+				student.setPassword("123456");
+				student.setName("压测学员" + i + "_" + j);
+				student.setSchoolId(schoolId);
+				student.setPhone("13900000000");
+				student = studentRepository.save(student);
+				students.add(student);
+
+				StudentAccountEntity account = new StudentAccountEntity();
+				account.setStudentId(student.getId());
+				account.setBalance(INITIAL_BALANCE);
+				studentAccountRepository.save(account);
+
+				CoachTeachStudentEntity relation = new CoachTeachStudentEntity();
+				relation.setCoachId(coach.getId());
+				relation.setStudentId(student.getId());
+				relation.setConfirmed(true);
+				relationRepository.save(relation);
+			}
+		}
+	}
+
+	@AfterEach
+	void tearDown() {
+		// 1. 预约及其关联的支付记录
+		List<Long> appointmentIds = new ArrayList<>();
+		for (CoachEntity coach : coaches) {
+			List<CourseAppointmentEntity> appointments = appointmentRepository.findByCoachId(coach.getId());
+			appointments.forEach(a -> appointmentIds.add(a.getId()));
+			appointmentRepository.deleteAll(appointments);
+		}
+		List<Long> studentIds = students.stream().map(StudentEntity::getId).toList();
+		List<Long> paymentRecordIds = new ArrayList<>();
+		for (Long studentId : studentIds) {
+			List<PaymentRecordEntity> records = paymentRecordRepository.findByStudentId(studentId);
+			records.forEach(r -> paymentRecordIds.add(r.getId()));
+			paymentRecordRepository.deleteAll(records);
+		}
+
+		// 2. 账本分录（整笔业务一起删除，包括平台代收账户一侧）、余额快照和发件箱事件
+		MapSqlParameterSource params = new MapSqlParameterSource()
+				.addValue("studentIds", studentIds)
+				.addValue("paymentRecordIds", paymentRecordIds.isEmpty() ? List.of(-1L) : paymentRecordIds)
+				.addValue("appointmentIds", appointmentIds.isEmpty() ? List.of(-1L) : appointmentIds);
+		jdbcTemplate.update("DELETE FROM ledger_entry_entity WHERE journal_id IN (SELECT journal_id FROM " +
+				"(SELECT journal_id FROM ledger_entry_entity WHERE account_type = 'STUDENT' " +
+				"AND account_id IN (:studentIds)) j)", params);
+		jdbcTemplate.update("DELETE FROM ledger_snapshot_entity WHERE account_type = 'STUDENT' " +
+				"AND account_id IN (:studentIds)", params);
+		jdbcTemplate.update("DELETE FROM outbox_event_entity WHERE (event_type = 'REFUND' AND related_id IN (:paymentRecordIds)) " +
+				"OR (event_type = 'COACH_SETTLEMENT' AND related_id IN (:appointmentIds))", params);
+
+		// 3. 学员账户、双选关系、学员、教练和球台
+		for (int i = 0; i < students.size(); i++) {
+			StudentEntity student = students.get(i);
+			studentAccountRepository.findByStudentId(student.getId()).ifPresent(studentAccountRepository::delete);
+			relationRepository.findByCoachIdAndStudentId(coachOf(i).getId(), student.getId()).ifPresent(relationRepository::delete);
+			studentRepository.delete(student);
+		}
+		coachRepository.deleteAll(coaches);
+		tableRepository.deleteAll(tables);
+	}
+
+	@Test
+	void sameSlotIsNeverDoubleBooked() throws Exception {
+		LocalDateTime start = LocalDateTime.now().plusDays(3).withHour(19).withMinute(0).withSecond(0).withNano(0);
+		LocalDateTime end = start.plusHours(1);
+
+		// 每位学员向自己的教练预约该教练对应的球台
+		List<Result<CourseAppointmentEntity>> results = runConcurrently(students.size(), i ->
+				appointmentService.bookCourse(coachOf(i).getId(), students.get(i).getId(), start, end,
+						tables.get(i / STUDENTS_PER_COACH).getId(), false));
+
+		// 每位教练恰好一个预约成功，且落在该教练对应的球台上
+		Map<Long, List<CourseAppointmentEntity>> succeededByCoach = results.stream()
+				.filter(Result::isSuccess).map(Result::getData)
+				.collect(Collectors.groupingBy(CourseAppointmentEntity::getCoachId));
+		assertEquals(TABLES, succeededByCoach.size());
+		for (int i = 0; i < TABLES; i++) {
+			List<CourseAppointmentEntity> booked = succeededByCoach.get(coaches.get(i).getId());
+			assertEquals(1, booked.size());
+			assertEquals(tables.get(i).getId(), booked.get(0).getTableId());
+		}
+		assertNoOverlap();
+	}
+
+	@Test
+	void coachIsNeverDoubleBookedAcrossTables() throws Exception {
+		LocalDateTime start = LocalDateTime.now().plusDays(4).withHour(19).withMinute(0).withSecond(0).withNano(0);
+		LocalDateTime end = start.plusHours(1);
+		CoachEntity coach = coachOf(0);
+
+		// 第一位教练的学员同时预约该时段，分散到不同球台：球台都空闲，冲突只在教练上
+		List<Result<CourseAppointmentEntity>> results = runConcurrently(STUDENTS_PER_COACH, i ->
+				appointmentService.bookCourse(coach.getId(), students.get(i).getId(), start, end,
+						tables.get(i % TABLES).getId(), false));
+
+		assertEquals(1, results.stream().filter(Result::isSuccess).count());
+		assertNoOverlap();
+	}
+
+	@Test
+	void concurrentDebitsOnOneAccountAreNotLost() throws Exception {
+		StudentEntity student = students.get(0);
+		CoachEntity coach = coachOf(0);
+		LocalDateTime base = LocalDateTime.now().plusDays(5).withHour(8).withMinute(0).withSecond(0).withNano(0);
+		int requests = 10;
+
+		// 同一学员并发预约不同时间段：只在账户余额上冲突，条件UPDATE扣款不会丢失
+		List<Result<CourseAppointmentEntity>> results = runConcurrently(requests, i ->
+				appointmentService.bookCourse(coach.getId(), student.getId(),
+						base.plusHours(i), base.plusHours(i + 1), null, true));
+
+		double spent = results.stream().filter(Result::isSuccess).mapToDouble(r -> r.getData().getAmount()).sum();
+		double balance = studentAccountRepository.findByStudentId(student.getId()).orElseThrow().getBalance();
+		assertEquals(INITIAL_BALANCE - spent, balance, 0.001);
+		assertNoOverlap();
+	}
+
+	// 第i名学员的教练
+	private CoachEntity coachOf(int studentIndex) {
+		return coaches.get(studentIndex / STUDENTS_PER_COACH);
+	}
+
+	// 所有线程同时开始执行，返回每个请求的结果
+	private List<Result<CourseAppointmentEntity>> runConcurrently(int count,
+			java.util.function.IntFunction<Result<CourseAppointmentEntity>> booking) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(count);
+		CountDownLatch startGate = new CountDownLatch(1);
+		try {
+			List<Future<Result<CourseAppointmentEntity>>> futures = new ArrayList<>();
+			for (int i = 0; i < count; i++) {
+				int index = i;
+				futures.add(executor.submit(() -> {
+					startGate.await();
+					return booking.apply(index);
+				}));
+			}
+			startGate.countDown();
+			List<Result<CourseAppointmentEntity>> results = new ArrayList<>();
+			for (Future<Result<CourseAppointmentEntity>> future : futures) {
+				results.add(future.get(60, TimeUnit.SECONDS));
+			}
+			return results;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	// 数据库中同一球台、同一教练的有效预约两两不重叠
+	private void assertNoOverlap() {
+		List<CourseAppointmentEntity> active = new ArrayList<>();
+		for (CoachEntity coach : coaches) {
+			for (CourseAppointmentEntity appointment : appointmentRepository.findByCoachId(coach.getId())) {
+				if (TableOccupancyIndex.ACTIVE_STATUSES.contains(appointment.getStatus())) {
+					active.add(appointment);
+				}
+			}
+		}
+		assertNoOverlap(active, CourseAppointmentEntity::getTableId, "球台");
+		assertNoOverlap(active, CourseAppointmentEntity::getCoachId, "教练");
+	}
+
+	private void assertNoOverlap(List<CourseAppointmentEntity> appointments,
+			Function<CourseAppointmentEntity, Long> key, String label) {
+		Map<Long, List<CourseAppointmentEntity>> grouped = new HashMap<>();
+		for (CourseAppointmentEntity appointment : appointments) {
+			grouped.computeIfAbsent(key.apply(appointment), k -> new ArrayList<>()).add(appointment);
+		}
+		for (List<CourseAppointmentEntity> list : grouped.values()) {
+			list.sort(Comparator.comparing(CourseAppointmentEntity::getStartTime));
+			for (int i = 1; i < list.size(); i++) {
+				assertTrue(!list.get(i).getStartTime().isBefore(list.get(i - 1).getEndTime()),
+						label + key.apply(list.get(i)) + "存在重叠预约");
+			}
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package org.example.pingpongsystem.service;
+
+import org.example.pingpongsystem.repository.JobLeaseRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 同一JVM内模拟多个节点共用一个数据库：任务租约同一时刻只有一个持有者，分片任务中每条数据只被处理一次
+ */
+@SpringBootTest
+class JobLeaseClusterTest {
+	private static final int NODES = 4;
+	private static final int SHARDS = 8;
+	private static final int ITEMS = 2000;
+	private static final int ITEMS_PER_ROUND = 10; // 每轮每个分片处理的条数，使处理过程跨越节点加入和分片重新分配
+
+	@Autowired
+	private JobLeaseRepository leaseRepository;
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	// 独立的集群名，避免与正在运行的节点及其他测试冲突
+	private final String clusterName = "test-" + UUID.randomUUID().toString().substring(0, 8);
+
+	@AfterEach
+	void tearDown() {
+		jdbcTemplate.update("DELETE FROM job_lease_entity WHERE job_name LIKE ?", clusterName + ":%");
+	}
+
+	@Test
+	void onlyOneNodeHoldsLeaseAndTakesOverAfterExpiry() throws Exception {
+		List<JobLeaseService> nodes = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			nodes.add(new JobLeaseService(leaseRepository, clusterName, "node-" + i, Duration.ofMillis(1000)));
+		}
+
+		// 多个节点同时争抢同一任务，只有一个成功
+		ExecutorService executor = Executors.newFixedThreadPool(nodes.size());
+		CountDownLatch startGate = new CountDownLatch(1);
+		try {
+			List<Future<Boolean>> futures = new ArrayList<>();
+			for (JobLeaseService node : nodes) {
+				futures.add(executor.submit(() -> {
+					startGate.await();
+					return node.tryAcquire("leader");
+				}));
+			}
+			startGate.countDown();
+			JobLeaseService owner = null;
+			for (int i = 0; i < nodes.size(); i++) {
+				if (futures.get(i).get(30, TimeUnit.SECONDS)) {
+					assertNull(owner, "多个节点同时持有租约");
+					owner = nodes.get(i);
+				}
+			}
+			assertNotNull(owner);
+
+			// 持有者续期期间其他节点无法获取
+			JobLeaseService other = nodes.get(owner == nodes.get(0) ? 1 : 0);
+			assertTrue(owner.tryAcquire("leader"));
+			assertFalse(other.tryAcquire("leader"));
+
+			// 持有者停止续期（模拟宕机），租约过期后被其他节点接管
+			Thread.sleep(1500);
+			assertTrue(other.tryAcquire("leader"));
+			assertFalse(owner.tryAcquire("leader"));
+			assertFalse(owner.holds("leader"));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void shardedWorkIsProcessedExactlyOnce() throws Exception {
+		Map<Integer, Integer> processCounts = new ConcurrentHashMap<>();
+		Set<Integer> done = ConcurrentHashMap.newKeySet();
+
+		ExecutorService executor = Executors.newFixedThreadPool(NODES);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int n = 0; n < NODES; n++) {
+				JobLeaseService node = new JobLeaseService(leaseRepository, clusterName, "node-" + n, Duration.ofMillis(2000));
+				futures.add(executor.submit(() -> {
+					while (done.size() < ITEMS) {
+						node.heartbeat();
+						for (int shard : node.acquireShards("work", SHARDS)) {
+							int processed = 0;
+							for (int id = shard; id < ITEMS && processed < ITEMS_PER_ROUND; id += SHARDS) {
+								if (!done.contains(id)) {
+									processCounts.merge(id, 1, Integer::sum);
+									Thread.yield(); // 放大"检查-处理"之间的窗口，分片被两个节点同时持有时必然重复
+									done.add(id);
+									processed++;
+								}
+							}
+						}
+						Thread.sleep(5);
+					}
+					return null;
+				}));
+				Thread.sleep(200); // 节点陆续加入，触发分片重新分配
+			}
+			for (Future<?> future : futures) {
+				future.get(120, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertEquals(ITEMS, processCounts.size());
+		processCounts.forEach((id, count) -> assertEquals(1, count, "数据" + id + "被重复处理"));
+	}
+}
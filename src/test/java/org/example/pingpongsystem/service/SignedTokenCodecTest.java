@@ -0,0 +1,120 @@
+package org.example.pingpongsystem.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 签名token：签发后可本地验签还原身份；篡改、换密钥、过期或登出后的token校验不通过
+ */
+class SignedTokenCodecTest {
+	private static final String SECRET = "test-secret-0123456789abcdef";
+	private static final long TTL_MINUTES = 720;
+
+	private final SignedTokenCodec codec = new SignedTokenCodec(SECRET, TTL_MINUTES);
+
+	@Test
+	void issuedTokenRoundTrips() {
+		long before = System.currentTimeMillis();
+		String token = codec.issue("student", 42L);
+
+		assertTrue(codec.isSignedToken(token));
+		SignedTokenCodec.Claims claims = codec.verify(token);
+		assertNotNull(claims);
+		assertEquals("student", claims.getRole());
+		assertEquals(42L, claims.getUserId());
+		assertNotNull(claims.getJti());
+		// 过期时间 = 签发时间（秒）+ 有效期
+		long ttlMillis = TTL_MINUTES * 60 * 1000;
+		assertTrue(claims.getExpireAt() >= before / 1000 * 1000 + ttlMillis);
+		assertTrue(claims.getExpireAt() <= System.currentTimeMillis() + ttlMillis);
+
+		// 同一用户每次签发的token不同
+		assertNotEquals(token, codec.issue("student", 42L));
+	}
+
+	@Test
+	void sameSecretVerifiesAcrossInstances() {
+		// 多节点配置相同密钥时，任一节点签发的token其他节点都能校验
+		String token = codec.issue("coach", 7L);
+		SignedTokenCodec.Claims claims = new SignedTokenCodec(SECRET, TTL_MINUTES).verify(token);
+		assertNotNull(claims);
+		assertEquals("coach", claims.getRole());
+		assertEquals(7L, claims.getUserId());
+	}
+
+	@Test
+	void tamperedOrForeignTokenIsRejected() {
+		String token = codec.issue("student", 42L);
+		int sigIndex = token.lastIndexOf('.');
+
+		// 1. 改写载荷中的角色，沿用原签名
+		String payload = new String(Base64.getUrlDecoder().decode(token.substring(3, sigIndex)));
+		String forgedBody = "v1." + Base64.getUrlEncoder().withoutPadding()
+				.encodeToString(payload.replaceFirst("^student", "super_admin").getBytes());
+		assertNull(codec.verify(forgedBody + token.substring(sigIndex)));
+
+		// 2. 改动签名
+		char last = token.charAt(token.length() - 1);
+		assertNull(codec.verify(token.substring(0, token.length() - 1) + (last == 'A' ? 'B' : 'A')));
+
+		// 3. 其他密钥签发的token
+		assertNull(codec.verify(new SignedTokenCodec("another-secret", TTL_MINUTES).issue("student", 42L)));
+
+		// 4. 格式不完整
+		assertNull(codec.verify(token.substring(0, sigIndex)));
+		assertNull(codec.verify("v1."));
+	}
+
+	@Test
+	void uuidTokenIsNotSigned() {
+		String uuidToken = UUID.randomUUID().toString();
+		assertFalse(codec.isSignedToken(uuidToken));
+		assertNull(codec.verify(uuidToken));
+		assertFalse(codec.isSignedToken(null));
+	}
+
+	@Test
+	void expiredTokenIsRejected() {
+		SignedTokenCodec expiring = new SignedTokenCodec(SECRET, -1);
+		assertNull(expiring.verify(expiring.issue("student", 42L)));
+	}
+
+	@Test
+	void revokedTokenIsRejectedUntilItExpires() {
+		String token = codec.issue("student", 42L);
+		String otherSession = codec.issue("student", 42L);
+
+		codec.revoke(codec.verify(token));
+		assertNull(codec.verify(token));
+		// 只登出这一个token，同一用户的其他会话不受影响
+		assertNotNull(codec.verify(otherSession));
+		assertEquals(1, codec.getRevokedCount());
+
+		// 未过期的登出记录不会被清理
+		codec.purgeExpiredRevocations();
+		assertEquals(1, codec.getRevokedCount());
+		assertNull(codec.verify(token));
+	}
+
+	@Test
+	void revocationSyncedByJtiRejectsToken() {
+		// 其他节点登出的token：按同步来的jti加入登出集合
+		String token = codec.issue("coach", 7L);
+		SignedTokenCodec.Claims claims = new SignedTokenCodec(SECRET, TTL_MINUTES).verify(token);
+		codec.revoke(claims.getJti(), claims.getExpireAt());
+		assertNull(codec.verify(token));
+	}
+
+	@Test
+	void expiredRevocationsArePurged() {
+		codec.revoke(new SignedTokenCodec.Claims("student", 42L, System.currentTimeMillis() - 1000, "expired-jti"));
+		assertEquals(1, codec.getRevokedCount());
+
+		codec.purgeExpiredRevocations();
+		assertEquals(0, codec.getRevokedCount());
+	}
+}
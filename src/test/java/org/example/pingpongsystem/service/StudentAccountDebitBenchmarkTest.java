@@ -0,0 +1,153 @@
+package org.example.pingpongsystem.service;
+
+import org.example.pingpongsystem.entity.StudentAccountEntity;
+import org.example.pingpongsystem.repository.StudentAccountRepository;
+import org.example.pingpongsystem.utility.MoneyUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 同一账户大量并发扣款：对比"读取-修改-保存+乐观锁重试"与条件UPDATE
+ * 两者都不能丢失扣款；旧方式在并发下需要重试，条件UPDATE每次扣款一次完成，且不会透支
+ * 耗时对比默认不运行，需要时加-Dbenchmark=true执行
+ */
+@SpringBootTest
+class StudentAccountDebitBenchmarkTest {
+	private static final int THREADS = 16;
+	private static final int DEBITS_PER_THREAD = 25;
+	private static final double AMOUNT = 0.1; // 用0.1元验证按分计算没有浮点误差
+	private static final double INITIAL_BALANCE = 1000.0;
+
+	@Autowired
+	private StudentAccountRepository studentAccountRepository;
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	// 使用不存在的学员ID，避免影响已有数据
+	private final Long studentId = 900000000L + new Random().nextInt(1000000);
+
+	@BeforeEach
+	void setUp() {
+		StudentAccountEntity account = new StudentAccountEntity();
+		account.setStudentId(studentId);
+		account.setBalance(INITIAL_BALANCE);
+		studentAccountRepository.save(account);
+	}
+
+	@AfterEach
+	void tearDown() {
+		studentAccountRepository.findByStudentId(studentId).ifPresent(studentAccountRepository::delete);
+	}
+
+	@Test
+	void conditionalDebitLosesNothingAndNeedsNoRetry() throws Exception {
+		long total = THREADS * DEBITS_PER_THREAD;
+		AtomicInteger legacyRetries = new AtomicInteger();
+		runConcurrently(() -> legacyDebit(legacyRetries));
+		long expectedCents = MoneyUtil.toCents(INITIAL_BALANCE) - MoneyUtil.toCents(AMOUNT) * total;
+		assertEquals(expectedCents, balanceCents());
+		// 同一行上的并发读改写必然发生版本冲突
+		assertTrue(legacyRetries.get() > 0, "读取-修改-保存在并发下应出现乐观锁重试");
+
+		AtomicInteger conditionalRetries = new AtomicInteger();
+		runConcurrently(() -> conditionalDebit(conditionalRetries));
+		expectedCents -= MoneyUtil.toCents(AMOUNT) * total;
+		assertEquals(expectedCents, balanceCents());
+		assertEquals(MoneyUtil.toYuan(expectedCents),
+				studentAccountRepository.findByStudentId(studentId).orElseThrow().getBalance(), 0.0);
+		// 余额充足时条件UPDATE每次都命中，不需要重试
+		assertEquals(0, conditionalRetries.get());
+	}
+
+	@Test
+	@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+	void compareDebitTimings() throws Exception {
+		AtomicInteger legacyRetries = new AtomicInteger();
+		long legacyMillis = runConcurrently(() -> legacyDebit(legacyRetries));
+		AtomicInteger conditionalRetries = new AtomicInteger();
+		long conditionalMillis = runConcurrently(() -> conditionalDebit(conditionalRetries));
+		System.out.printf("%d次并发扣款：读取-修改-保存 %dms（乐观锁重试%d次），条件UPDATE %dms（重试%d次）%n",
+				THREADS * DEBITS_PER_THREAD, legacyMillis, legacyRetries.get(), conditionalMillis, conditionalRetries.get());
+	}
+
+	@Test
+	void debitNeverOverdraws() throws Exception {
+		// 余额只够一半的请求
+		long halfCents = MoneyUtil.toCents(INITIAL_BALANCE) / 2;
+		studentAccountRepository.debit(studentId, halfCents);
+		long price = halfCents / (THREADS * DEBITS_PER_THREAD / 2);
+		AtomicInteger succeeded = new AtomicInteger();
+		runConcurrently(() -> succeeded.addAndGet(studentAccountRepository.debit(studentId, price)));
+
+		assertEquals(halfCents / price, succeeded.get());
+		assertEquals(halfCents - price * succeeded.get(), balanceCents());
+	}
+
+	// 旧方式：事务内读取余额、在Java中扣减后保存，版本冲突时重新读取再扣
+	private void legacyDebit(AtomicInteger retries) {
+		while (true) {
+			try {
+				transactionTemplate.executeWithoutResult(status -> {
+					StudentAccountEntity account = studentAccountRepository.findByStudentId(studentId).orElseThrow();
+					account.setBalance(account.getBalance() - AMOUNT);
+					studentAccountRepository.save(account);
+				});
+				return;
+			} catch (OptimisticLockingFailureException e) {
+				retries.incrementAndGet();
+			}
+		}
+	}
+
+	// 条件UPDATE：影响0行表示需要重试，余额充足时不应发生
+	private void conditionalDebit(AtomicInteger retries) {
+		if (studentAccountRepository.debit(studentId, MoneyUtil.toCents(AMOUNT)) != 1) {
+			retries.incrementAndGet();
+		}
+	}
+
+	private long balanceCents() {
+		return studentAccountRepository.findByStudentId(studentId).orElseThrow().getBalanceCents();
+	}
+
+	// THREADS个线程同时开始，每个执行DEBITS_PER_THREAD次debit，返回总耗时（毫秒）
+	private long runConcurrently(Runnable debit) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch startGate = new CountDownLatch(1);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i = 0; i < THREADS; i++) {
+				futures.add(executor.submit(() -> {
+					startGate.await();
+					for (int j = 0; j < DEBITS_PER_THREAD; j++) {
+						debit.run();
+					}
+					return null;
+				}));
+			}
+			long start = System.nanoTime();
+			startGate.countDown();
+			for (Future<?> future : futures) {
+				future.get(120, TimeUnit.SECONDS);
+			}
+			return (System.nanoTime() - start) / 1_000_000;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package org.example.pingpongsystem.service;
+
+import org.example.pingpongsystem.entity.TokenEntity;
+import org.example.pingpongsystem.repository.TokenRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 对比两种token模式的校验开销：UUID模式每次查token表，签名模式只做本地HMAC验签
+ * 性能对比默认不运行，需要时加-Dbenchmark=true执行（依赖测试数据库）
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class TokenVerificationBenchmarkTest {
+	private static final int WARMUP = 200;
+	private static final int ITERATIONS = 2000;
+
+	@Autowired
+	private TokenRepository tokenRepository;
+
+	@Autowired
+	private SignedTokenCodec signedTokenCodec;
+
+	@Test
+	void signedVerificationIsCheaperThanTableLookup() {
+		TokenEntity tokenEntity = new TokenEntity();
+		tokenEntity.setToken(UUID.randomUUID().toString());
+		tokenEntity.setStudent(true);
+		tokenEntity.setUserId(1L);
+		tokenRepository.save(tokenEntity);
+		String uuidToken = tokenEntity.getToken();
+		String signedToken = signedTokenCodec.issue("student", 1L);
+
+		try {
+			double uuidMicros = measure(() -> assertNotNull(tokenRepository.findByToken(uuidToken)));
+			double signedMicros = measure(() -> assertNotNull(signedTokenCodec.verify(signedToken)));
+			System.out.printf("token校验耗时：uuid=%.2fus/次，signed=%.2fus/次%n", uuidMicros, signedMicros);
+			assertTrue(signedMicros < uuidMicros);
+		} finally {
+			tokenRepository.delete(tokenEntity);
+		}
+	}
+
+	// 预热后执行ITERATIONS次，返回平均耗时（微秒）
+	private double measure(Runnable verification) {
+		for (int i = 0; i < WARMUP; i++) {
+			verification.run();
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			verification.run();
+		}
+		return (System.nanoTime() - start) / 1000.0 / ITERATIONS;
+	}
+}